@@ -1,6 +1,9 @@
 package co.unicauca.menu.access;
 
+import co.unicauca.menu.domain.entity.Dia;
+import co.unicauca.menu.domain.entity.Franja;
 import co.unicauca.menu.domain.entity.Menu;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,7 +16,25 @@ public interface IMenuRepository
 
     Menu findByMenuId(String prmIdMenu);
     
+    Menu findByMenuIdCompleto(String prmIdMenu);
+    
+    Long findVersion(String prmIdMenu);
+    
     List<Menu> findByIdRest(String prmIdRest);
+    
+    List<Menu> findByIdRestCompleto(String prmIdRest);
+    
+    /**
+     * Busca los menus de un restaurante, o de todos, sin ocultar las fallas
+     *
+     * @param prmIdRest id del restaurante, o null para todos
+     * @return lista de menus, o null si falló la consulta
+     */
+    List<Menu> findMenus(String prmIdRest);
+    
+    List<Menu> findByPlato(String prmIdPlato);
+    
+    List<Menu> findDisponibles(Dia prmDia, String prmIdRest);
 
     boolean create(Menu prmNewMenu);
 
@@ -21,15 +42,29 @@ public interface IMenuRepository
 
     boolean delete(String prmIdMenu);
     
-    boolean createVisualizacion(String prmIdMenu, String prmDia);
+    boolean createVisualizacion(String prmIdMenu, Dia prmDia);
     
     boolean createOfrece(String prmIdMenu, String prmIdPlato);
     
     List<String> listarDia(String prmIdMenu);
     
+    Integer findDias(String prmIdMenu);
+    
     List<String> listarPlato(String prmIdMenu);
     
-    boolean deleteVisualizacion (String prmIdMenu, String prmDia);
+    Integer asignarDias(String prmIdMenu, int prmDias);
+    
+    List<String> asignarPlatos(String prmIdMenu, Collection<String> prmIdsPlatos, boolean prmReemplazar);
+    
+    boolean deleteVisualizacion (String prmIdMenu, Dia prmDia);
     
     boolean deleteOfrece (String prmIdMenu, String prmIDPlato);
+    
+    List<Franja> findFranjas(String prmIdMenu);
+    
+    List<Franja> findVentanas(String prmIdRest);
+    
+    Franja createFranja(Franja prmFranja);
+    
+    boolean deleteFranja(String prmIdMenu, long prmIdFranja);
 }
@@ -0,0 +1,26 @@
+package co.unicauca.menu.access;
+
+import co.unicauca.menu.domain.entity.DishBatch;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Acceso al servicio web de API-Plato
+ *
+ * @author Michelle Vallejo
+ */
+public interface IPlatoClient
+{
+    /**
+     * Número máximo de ids que API-Plato acepta por petición
+     */
+    int MAX_LOTE = 100;
+
+    /**
+     * Pide un lote de platos sin bloquear al llamador
+     *
+     * @param prmIdsPlatos ids de los platos, como máximo MAX_LOTE
+     * @return respuesta futura de API-Plato
+     */
+    Future<DishBatch> findByIds(List<String> prmIdsPlatos);
+}
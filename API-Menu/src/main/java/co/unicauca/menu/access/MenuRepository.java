@@ -1,150 +1,228 @@
 package co.unicauca.menu.access;
 
+import co.unicauca.menu.domain.entity.Dia;
+import co.unicauca.menu.domain.entity.Franja;
 import co.unicauca.menu.domain.entity.Menu;
+import java.sql.Array;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 /**
  * Es una implementación que tiene libertad de hacer una implementación del
  * contrato. Se utiliza postgres, importante: para que funcione la aplicación, 
  * se debe copiar manualmente la librería de maven de netbeans postgresql-42.2.8.jar, 
- * y pegarla en el directorio donde se haya instalado Payara
+ * y pegarla en el directorio donde se haya instalado Payara. Las conexiones se
+ * toman del pool declarado en el web.xml. Es una unica instancia para toda la
+ * aplicacion, el esquema lo crea DatabaseBootstrap al desplegar
  * @author Michelle Vallejo
  */
+@ApplicationScoped
 public class MenuRepository implements IMenuRepository{
     
-    private Connection conn;
-    
-    public MenuRepository (){
-        initDatabase();
-    }
+    /**
+     * Menus con sus platos agregados por subconsulta y su mascara de dias,
+     * sin WHERE
+     */
+    private static final String SELECT_COMPLETO = "SELECT m.IDMENU, m.NAMEMENU, m.IDREST, "
+            + "ARRAY(SELECT o.ID FROM ofrece o WHERE o.IDMENU = m.IDMENU ORDER BY o.ID) AS PLATOS, "
+            + "m.DIAS "
+            + "FROM menu m ";
     
+    /**
+     * Franjas horarias con las horas en formato HH:mm, sin WHERE
+     */
+    private static final String SELECT_FRANJA = "SELECT f.IDFRANJA, f.IDMENU, f.DIAS, "
+            + "to_char(f.HORA_INICIO, 'HH24:MI'), to_char(f.HORA_FIN, 'HH24:MI') FROM franja f ";
     
-
     /**
-     *  Inicializa la tabla Menu e insertar un registro
+     * Pool de conexiones a menuBD
      */
-    private void initDatabase() 
-    {
-         //SQL statement for creating a new table
-        String sql = "CREATE TABLE IF NOT EXISTS menu ("
-                        + "IDMENU varchar(60) PRIMARY KEY," 
-                        + "NAMEMENU varchar(60) NOT NULL,"
-                        + "IDREST varchar(60) not null" 
-                        + "); "
-                
-                        + "CREATE TABLE IF NOT EXISTS visualizacion ("
-                        + "IDMENU varchar(60) not null,"
-                        + "DIA varchar(60) not null,"
-                        + "primary key(IDMENU, DIA)"
-                        + "); "
-                        
-                        + "CREATE TABLE IF NOT EXISTS ofrece("
-                        + "IDMENU varchar(60) not null,"
-                        + "ID varchar(60) not null,"
-                        + "primary key(IDMENU, ID)"
-                         + "); ";
-          try {
-            this.connect();
-            Statement stmt = conn.createStatement();
-            stmt.execute(sql);
-            // Datos de inicialización
-            if(this.findByMenuId("100")==null){
-            stmt.execute("INSERT INTO menu(IDMENU, NAMEMENU, IDREST) "
-                    + "values('100','Menu Oriental','500');");
+    @Inject
+    private ConnectionPool pool;
+    
+    @Override
+    public List<Menu> findAll() {
+        List<Menu> menu = new ArrayList<>();
+        String sql = "SELECT * FROM menu";
+        try (Connection conn = pool.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                menu.add(toMenu(rs));
             }
-            this.disconnect();
-        } catch (SQLException ex){
+        } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
-        }   
+        }
+        return menu;
+    }
+
+    @Override
+    public List<Menu> findByIdRest(String IdRest) {
+        List<Menu> menu = new ArrayList<>();
+        String sql = "SELECT * FROM menu where idrest = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, IdRest);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    menu.add(toMenu(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return menu;
     }
     
-    /**
-     * Conectar a la bd
-     */
-    public void connect(){
-        try {
-            
-            String url = "jdbc:postgresql://localhost:5432/menuBD";
-            String usuario = "postgres";
-            String contrasenia = "system";
-            Class.forName("org.postgresql.Driver");
-            conn = DriverManager.getConnection(url, usuario, contrasenia);
-           
-        } catch (SQLException | ClassNotFoundException ex) {
+    @Override
+    public List<Menu> findMenus(String prmIdRest) {
+        List<Menu> menus = new ArrayList<>();
+        String sql = "SELECT * FROM menu" + (prmIdRest == null ? "" : " WHERE IDREST = ?");
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (prmIdRest != null) {
+                pstmt.setString(1, prmIdRest);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    menus.add(toMenu(rs));
+                }
+            }
+        } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
         }
+        return menus;
     }
-
+    
     /**
-     * Desconecta de la base de datos
+     * Busca los menus que ofrecen un plato usando el indice de ofrece por
+     * plato
      */
-    public void disconnect() {
-        try {
-            if (conn != null) {
-                conn.close();
+    @Override
+    public List<Menu> findByPlato(String prmIdPlato) {
+        List<Menu> menu = new ArrayList<>();
+        String sql = "SELECT m.* FROM ofrece o JOIN menu m ON m.IDMENU = o.IDMENU "
+                + "WHERE o.ID = ? ORDER BY m.IDREST, m.IDMENU";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdPlato);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    menu.add(toMenu(rs));
+                }
             }
         } catch (SQLException ex) {
-            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al cerrar conexión de la base de datos", ex);
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
         }
-
+        return menu;
     }
-
+    
+    /**
+     * Busca los menus visibles un dia, con una sola consulta sobre menu. El
+     * bit del dia va como literal en la consulta para que postgres use el
+     * indice parcial de ese dia.
+     *
+     * @param prmDia dia
+     * @param prmIdRest id del restaurante, o null para todos
+     */
     @Override
-    public List<Menu> findAll() {
+    public List<Menu> findDisponibles(Dia prmDia, String prmIdRest) {
         List<Menu> menu = new ArrayList<>();
-        try {
-
-            String sql = "SELECT * FROM menu";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                Menu newMenu = new Menu();
-                newMenu.setAtrIdMenu(rs.getString("IDMENU"));
-                newMenu.setAtrNomMenu(rs.getString("NAMEMENU"));
-                newMenu.setAtrIdMenu(rs.getString("IDREST"));
-                menu.add(newMenu);
+        String sql = "SELECT * FROM menu "
+                + "WHERE (DIAS & " + prmDia.getBit() + ") <> 0 " + (prmIdRest == null ? "" : "AND IDREST = ? ")
+                + "ORDER BY IDREST, IDMENU";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (prmIdRest != null) {
+                pstmt.setString(1, prmIdRest);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    menu.add(toMenu(rs));
+                }
             }
-            this.disconnect();
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
         }
         return menu;
     }
-
+    
+    /**
+     * Busca los menus de un restaurante con sus platos y dias de visualizacion
+     * en una sola consulta
+     */
     @Override
-    public List<Menu> findByIdRest(String IdRest) {
-        List<Menu> menu = new ArrayList<>();
-        try {
-
-            String sql = "SELECT * FROM menu where idrest='"+IdRest+"'";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                Menu newMenu = new Menu();
-                newMenu.setAtrIdMenu(rs.getString("IDMENU"));
-                newMenu.setAtrNomMenu(rs.getString("NAMEMENU"));
-                newMenu.setAtrIdMenu(rs.getString("IDREST"));
-                menu.add(newMenu);
+    public List<Menu> findByIdRestCompleto(String prmIdRest) {
+        return findCompletos(SELECT_COMPLETO + "WHERE m.IDREST = ? ORDER BY m.IDMENU", prmIdRest);
+    }
+    
+    /**
+     * Busca un menu con sus platos y dias de visualizacion en una sola
+     * consulta
+     */
+    @Override
+    public Menu findByMenuIdCompleto(String prmIdMenu) {
+        List<Menu> menus = findCompletos(SELECT_COMPLETO + "WHERE m.IDMENU = ?", prmIdMenu);
+        return menus.isEmpty() ? null : menus.get(0);
+    }
+    
+    private List<Menu> findCompletos(String sql, String prmId) {
+        List<Menu> menus = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Menu menu = toMenu(rs);
+                    for (String plato : (String[]) rs.getArray("PLATOS").getArray()) {
+                        menu.setAtrIdPlatos(plato);
+                    }
+                    for (String dia : Dia.nombres(rs.getInt("DIAS"))) {
+                        menu.setAtrDiasVisualizacion(dia);
+                    }
+                    menus.add(menu);
+                }
             }
-            this.disconnect();
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return menu;
+        return menus;
     }
+    /**
+     * Version del menu, la mantienen los triggers de la base de datos
+     *
+     * @param prmIdMenu id del menu
+     * @return version, o null si el menu no existe
+     */
+    @Override
+    public Long findVersion(String prmIdMenu) {
+        String sql = "SELECT VERSION FROM menu WHERE IDMENU = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
     /*
     * Verifica si existe el menu en la base de datos
     * buscando por su primary key idmenu
@@ -152,20 +230,15 @@ public class MenuRepository implements IMenuRepository{
     @Override
     public Menu findByMenuId(String prmIdMenu) {
         Menu menu = null;
-        try {
-
-            String sql = "SELECT * FROM menu Where IDMENU='" + prmIdMenu+"'";
-            this.connect();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            if (rs.next()) {
-                menu = new Menu();
-                menu.setAtrIdMenu(rs.getString("idmenu"));
-                menu.setAtrNomMenu(rs.getString("namemenu"));
-                menu.setAtrIdRest(rs.getString("idrest"));
+        String sql = "SELECT * FROM menu Where IDMENU = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    menu = toMenu(rs);
                 }
-            this.disconnect();
-
+            }
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al buscar en la base de datos", ex);
         }
@@ -174,19 +247,14 @@ public class MenuRepository implements IMenuRepository{
 
     @Override
     public boolean create(Menu prmNewMenu) {
-        String sql="";
-        try {
-            this.connect();
-
-            sql = "INSERT INTO menu ( IDMENU, NAMEMENU, IDREST) "
-                    + "VALUES ( ?, ?, ?)";
-
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+        String sql = "INSERT INTO menu ( IDMENU, NAMEMENU, IDREST) "
+                + "VALUES ( ?, ?, ?)";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, prmNewMenu.getAtrIdMenu());
             pstmt.setString(2, prmNewMenu.getAtrNomMenu());
             pstmt.setString(3, prmNewMenu.getAtrIdRest());
             pstmt.executeUpdate();
-            this.disconnect();
             return true;
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error en el insert into: " + sql, ex);
@@ -196,18 +264,17 @@ public class MenuRepository implements IMenuRepository{
 
     @Override
     public boolean update(Menu prmNewMenu) {
-        try {
-            this.connect();
-
-            String sql = "UPDATE menu "
-                    + "SET  "
-                    + "NAMEMENU ='"+prmNewMenu.getAtrNomMenu()+ "', "
-                    + "IDREST = '"+prmNewMenu.getAtrIdRest()+"' "
-                    + "WHERE IDMENU = '"+prmNewMenu.getAtrIdMenu()+"'";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            
+        String sql = "UPDATE menu "
+                + "SET  "
+                + "NAMEMENU = ?, "
+                + "IDREST = ? "
+                + "WHERE IDMENU = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmNewMenu.getAtrNomMenu());
+            pstmt.setString(2, prmNewMenu.getAtrIdRest());
+            pstmt.setString(3, prmNewMenu.getAtrIdMenu());
             pstmt.executeUpdate();
-            this.disconnect();
             return true;
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al actualizar el menu", ex);
@@ -218,16 +285,13 @@ public class MenuRepository implements IMenuRepository{
     @Override
     public boolean delete(String prmIdMenu) 
     {
-        try 
+        String sql = "DELETE FROM menu "
+                    + "WHERE IDMENU = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) 
         {
-
-            String sql = "DELETE FROM menu "
-                        + "WHERE IDMENU = ?";
-            this.connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, prmIdMenu);
             pstmt.executeUpdate();
-            this.disconnect();
             return true;
         } catch (SQLException ex) 
         {
@@ -237,52 +301,78 @@ public class MenuRepository implements IMenuRepository{
     }
 
     @Override
-    public boolean createVisualizacion(String prmIdMenu, String prmDia) {
-        String sql="";
-        try {
-            this.connect();
-
-            sql = "INSERT INTO visualizacion ( IDMENU, DIA) "
-                    + "VALUES ( '" + prmIdMenu + "','" + prmDia + "')";
-            
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
-        } catch (SQLException ex){
-            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error en el insert into del menu" + sql, ex);
-        }
-        return false;
+    public boolean createVisualizacion(String prmIdMenu, Dia prmDia) {
+        return actualizarDias("UPDATE menu SET DIAS = DIAS | ? WHERE IDMENU = ?", prmDia.getBit(), prmIdMenu) != null;
     }
 
     @Override
-    public boolean deleteVisualizacion (String prmIdMenu, String prmDia){
-        String sql="";
-        try {
-            this.connect();
-
-            sql = "DELETE  FROM visualizacion WHERE IDMENU='"+prmIdMenu+"' and DIA='"+prmDia+"'";
-                    
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
-        } catch (SQLException ex){
-            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error en el insert into del menu" + sql, ex);
+    public boolean deleteVisualizacion (String prmIdMenu, Dia prmDia){
+        return actualizarDias("UPDATE menu SET DIAS = DIAS & ~?::smallint WHERE IDMENU = ?", prmDia.getBit(), prmIdMenu) != null;
+    }
+    
+    /**
+     * Reemplaza la mascara de dias del menu con una sola sentencia
+     */
+    @Override
+    public Integer asignarDias(String prmIdMenu, int prmDias) {
+        return actualizarDias("UPDATE menu SET DIAS = ? WHERE IDMENU = ?", prmDias, prmIdMenu);
+    }
+    
+    /**
+     * Mascara de dias de visualizacion del menu
+     *
+     * @param prmIdMenu id del menu
+     * @return mascara, o null si el menu no existe
+     */
+    @Override
+    public Integer findDias(String prmIdMenu) {
+        String sql = "SELECT DIAS FROM menu WHERE IDMENU = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return false;
+        return null;
+    }
+    
+    /**
+     * Ejecuta un UPDATE de la mascara de dias de un menu
+     *
+     * @param sql UPDATE con la mascara o el bit y el id del menu como parametros
+     * @param prmBits mascara o bit del dia
+     * @param prmIdMenu id del menu
+     * @return mascara después del cambio, o null si el menu no existe o falló
+     */
+    private Integer actualizarDias(String sql, int prmBits, String prmIdMenu) {
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql + " RETURNING DIAS")) {
+            pstmt.setShort(1, (short) prmBits);
+            pstmt.setString(2, prmIdMenu);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al actualizar los dias del menu " + prmIdMenu, ex);
+        }
+        return null;
     }
     
     @Override
     public boolean createOfrece(String prmIdMenu, String prmIdPlato) {
-         try {
-            this.connect();
-
-            String sql = "INSERT INTO ofrece (IDMENU,ID) VALUES ('"+prmIdMenu+"','"+prmIdPlato+"')";
-                    
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             pstmt.executeUpdate();
-            this.disconnect();
+        String sql = "INSERT INTO ofrece (IDMENU,ID) VALUES (?, ?)";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            pstmt.setString(2, prmIdPlato);
+            pstmt.executeUpdate();
             return true;
          } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al actualizar", ex);
@@ -293,15 +383,12 @@ public class MenuRepository implements IMenuRepository{
 
     @Override
     public boolean deleteOfrece (String prmIdMenu, String prmIDPlato){
-        String sql="";
-        try {
-            this.connect();
-
-            sql = "DELETE  FROM ofrece WHERE IDMENU='"+prmIdMenu+"' and ID='"+prmIDPlato+"'";
-                    
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+        String sql = "DELETE  FROM ofrece WHERE IDMENU = ? and ID = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            pstmt.setString(2, prmIDPlato);
             pstmt.executeUpdate();
-            this.disconnect();
             return true;
         } catch (SQLException ex){
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error en el insert into del menu" + sql, ex);
@@ -312,49 +399,253 @@ public class MenuRepository implements IMenuRepository{
     
     @Override
     public List<String> listarDia(String prmIdMenu) {
-        List<String> listaDia = null;
-        try {
-
-            String sql = "SELECT DIA FROM visualizacion WHERE IDMENU = '" + prmIdMenu + "'";
-            this.connect();
+        Integer dias = findDias(prmIdMenu);
+        return dias == null || dias == 0 ? null : Dia.nombres(dias);
+    }
 
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                listaDia = new ArrayList<>();
-                
-                listaDia.add(rs.getString("DIA"));
-                
+    @Override
+    public List<String> listarPlato(String prmIdMenu) {
+        return listarColumna("SELECT ID FROM ofrece WHERE IDMENU = ?", prmIdMenu);
+    }
+    
+    @Override
+    public List<String> asignarPlatos(String prmIdMenu, Collection<String> prmIdsPlatos, boolean prmReemplazar) {
+        return asignar(prmIdMenu, prmIdsPlatos, prmReemplazar,
+                "DELETE FROM ofrece WHERE IDMENU = ? AND NOT (ID = ANY(?))",
+                "INSERT INTO ofrece (IDMENU, ID) SELECT ?, unnest(?::varchar[]) ON CONFLICT DO NOTHING",
+                "SELECT ID FROM ofrece WHERE IDMENU = ? ORDER BY ID");
+    }
+    
+    @Override
+    public List<Franja> findFranjas(String prmIdMenu) {
+        return listarFranjas(SELECT_FRANJA + "WHERE f.IDMENU = ? ORDER BY f.HORA_INICIO, f.IDFRANJA", prmIdMenu);
+    }
+    
+    /**
+     * Busca las ventanas de tiempo en que están activos los menus de un
+     * restaurante, o de todos. Los menus sin franjas están activos todo el
+     * dia en sus dias de visualizacion; para ellos se devuelve una franja de
+     * 00:00 a 24:00 sin id.
+     *
+     * Los dias de visualizacion del menu mandan: una franja solo cuenta en
+     * los dias que tiene en común con su menu, así un menu no aparece activo
+     * un dia en que /menu/disponibles no lo muestra. Las franjas sin dias en
+     * común no se devuelven.
+     *
+     * @param prmIdRest id del restaurante, o null para todos
+     * @return franjas de los menus
+     */
+    @Override
+    public List<Franja> findVentanas(String prmIdRest) {
+        String filtro = prmIdRest == null ? "" : "AND m.IDREST = ? ";
+        String sql = "SELECT f.IDFRANJA, f.IDMENU, f.DIAS & m.DIAS, "
+                + "to_char(f.HORA_INICIO, 'HH24:MI'), to_char(f.HORA_FIN, 'HH24:MI') "
+                + "FROM franja f JOIN menu m ON m.IDMENU = f.IDMENU WHERE f.DIAS & m.DIAS <> 0 " + filtro
+                + "UNION ALL "
+                + "SELECT NULL, m.IDMENU, m.DIAS, '00:00', '24:00' FROM menu m "
+                + "WHERE m.DIAS <> 0 AND NOT EXISTS (SELECT 1 FROM franja f WHERE f.IDMENU = m.IDMENU) " + filtro;
+        List<Franja> franjas = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (prmIdRest != null) {
+                pstmt.setString(1, prmIdRest);
+                pstmt.setString(2, prmIdRest);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    franjas.add(toFranja(rs));
+                }
             }
-            this.disconnect();
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
         }
-        return listaDia;
+        return franjas;
     }
-
+    
     @Override
-    public List<String> listarPlato(String prmIdMenu) {
-        List<String> listaPlato = null;
-        try {
-
-            String sql = "SELECT ID FROM ofrece WHERE IDMENU = '" + prmIdMenu + "'";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                listaPlato = new ArrayList<>();
-                
-                listaPlato.add(rs.getString("ID"));
-                
+    public Franja createFranja(Franja prmFranja) {
+        String sql = "INSERT INTO franja (IDMENU, DIAS, HORA_INICIO, HORA_FIN) VALUES (?, ?, ?::time, ?::time) "
+                + "RETURNING IDFRANJA";
+        List<Dia> dias = new ArrayList<>();
+        for (String dia : prmFranja.getAtrDias()) {
+            dias.add(Dia.parse(dia));
+        }
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmFranja.getAtrIdMenu());
+            pstmt.setShort(2, (short) Dia.mascara(dias));
+            pstmt.setString(3, prmFranja.getAtrHoraInicio());
+            pstmt.setString(4, prmFranja.getAtrHoraFin());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                Franja franja = new Franja();
+                franja.setAtrIdFranja(rs.getLong(1));
+                franja.setAtrIdMenu(prmFranja.getAtrIdMenu());
+                franja.setAtrDias(Dia.nombres(Dia.mascara(dias)));
+                franja.setAtrHoraInicio(prmFranja.getAtrHoraInicio());
+                franja.setAtrHoraFin(prmFranja.getAtrHoraFin());
+                return franja;
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al crear la franja del menu " + prmFranja.getAtrIdMenu(), ex);
+        }
+        return null;
+    }
+    
+    @Override
+    public boolean deleteFranja(String prmIdMenu, long prmIdFranja) {
+        String sql = "DELETE FROM franja WHERE IDMENU = ? AND IDFRANJA = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            pstmt.setLong(2, prmIdFranja);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al eliminar la franja " + prmIdFranja, ex);
+        }
+        return false;
+    }
+    
+    private List<Franja> listarFranjas(String sql, String prmId) {
+        List<Franja> franjas = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    franjas.add(toFranja(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return franjas;
+    }
+    
+    /**
+     * Deja los valores de un detalle del menu iguales o
+     * agregados a los dados, en una sola transacción. El menu se bloquea con
+     * FOR UPDATE para que dos asignaciones al mismo menu no se mezclen. Solo
+     * se borran las filas que sobran y solo se insertan las que faltan.
+     *
+     * @param prmIdMenu id del menu
+     * @param prmValores valores que debe tener el menu
+     * @param prmReemplazar true para borrar los valores que no están en la
+     * lista, false para solo agregar
+     * @param sqlBorrar borra los valores del menu que no están en el arreglo
+     * @param sqlInsertar inserta los valores del arreglo que faltan
+     * @param sqlListar consulta los valores resultantes
+     * @return valores del menu después del cambio, o null si el menu no
+     * existe o no se pudo guardar
+     */
+    private List<String> asignar(String prmIdMenu, Collection<String> prmValores, boolean prmReemplazar,
+            String sqlBorrar, String sqlInsertar, String sqlListar) {
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<String> resultado = null;
+                if (bloquearMenu(conn, prmIdMenu)) {
+                    Array valores = conn.createArrayOf("varchar", prmValores.toArray());
+                    if (prmReemplazar) {
+                        try (PreparedStatement pstmt = conn.prepareStatement(sqlBorrar)) {
+                            pstmt.setString(1, prmIdMenu);
+                            pstmt.setArray(2, valores);
+                            pstmt.executeUpdate();
+                        }
+                    }
+                    try (PreparedStatement pstmt = conn.prepareStatement(sqlInsertar)) {
+                        pstmt.setString(1, prmIdMenu);
+                        pstmt.setArray(2, valores);
+                        pstmt.executeUpdate();
+                    }
+                    resultado = new ArrayList<>();
+                    try (PreparedStatement pstmt = conn.prepareStatement(sqlListar)) {
+                        pstmt.setString(1, prmIdMenu);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                resultado.add(rs.getString(1));
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+                return resultado;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, "Error al actualizar el detalle del menu " + prmIdMenu, ex);
+        }
+        return null;
+    }
+    
+    /**
+     * Bloquea la fila del menu hasta el fin de la transacción
+     *
+     * @return true si el menu existe
+     */
+    private boolean bloquearMenu(Connection conn, String prmIdMenu) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM menu WHERE IDMENU = ? FOR UPDATE")) {
+            pstmt.setString(1, prmIdMenu);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    /**
+     * Ejecuta una consulta de una sola columna filtrada por el id del menu
+     *
+     * @param sql consulta con un parametro
+     * @param prmIdMenu id del menu
+     * @return valores de la columna, o null si no hay registros
+     */
+    private List<String> listarColumna(String sql, String prmIdMenu) {
+        List<String> lista = null;
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdMenu);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (lista == null) {
+                        lista = new ArrayList<>();
+                    }
+                    lista.add(rs.getString(1));
+                }
             }
-            this.disconnect();
         } catch (SQLException ex) {
             Logger.getLogger(MenuRepository.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return listaPlato;
+        return lista;
+    }
+    
+    /**
+     * Construye una franja a partir de la fila actual del resultado
+     */
+    private Franja toFranja(ResultSet rs) throws SQLException {
+        Franja franja = new Franja();
+        long id = rs.getLong(1);
+        franja.setAtrIdFranja(rs.wasNull() ? null : id);
+        franja.setAtrIdMenu(rs.getString(2));
+        franja.setAtrDias(Dia.nombres(rs.getInt(3)));
+        franja.setAtrHoraInicio(rs.getString(4));
+        franja.setAtrHoraFin(rs.getString(5));
+        return franja;
+    }
+    
+    /**
+     * Construye un menu a partir de la fila actual del resultado
+     */
+    private Menu toMenu(ResultSet rs) throws SQLException {
+        Menu menu = new Menu();
+        menu.setAtrIdMenu(rs.getString("IDMENU"));
+        menu.setAtrNomMenu(rs.getString("NAMEMENU"));
+        menu.setAtrIdRest(rs.getString("IDREST"));
+        return menu;
     }
-               
         
 }
@@ -0,0 +1,71 @@
+package co.unicauca.menu.access;
+
+import co.unicauca.menu.domain.entity.DishBatch;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Cliente REST de API-Plato. La URL del servicio se configura en el web.xml
+ * (platoServiceUrl). El cliente se crea una sola vez y sus peticiones
+ * asíncronas corren en el executor administrado por Payara.
+ *
+ * @author Michelle Vallejo
+ */
+@ApplicationScoped
+public class PlatoClient implements IPlatoClient
+{
+    private static final String URL_POR_DEFECTO = "http://localhost:8084/API-Plato/plato-service";
+
+    @Resource(name = "platoServiceUrl")
+    private String platoServiceUrl;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    private Client client;
+    private WebTarget batch;
+
+    @PostConstruct
+    private void init() {
+        conectar(platoServiceUrl == null ? URL_POR_DEFECTO : platoServiceUrl, executor);
+    }
+
+    /**
+     * Crea el cliente de API-Plato
+     *
+     * @param url URL base de API-Plato, sin la ruta plato/batch
+     * @param executor executor en el que corren las peticiones asíncronas
+     */
+    void conectar(String url, ExecutorService executor) {
+        client = ClientBuilder.newBuilder()
+                .executorService(executor)
+                .connectTimeout(500, TimeUnit.MILLISECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .build();
+        batch = client.target(url).path("plato/batch");
+    }
+
+    @PreDestroy
+    void close() {
+        client.close();
+    }
+
+    @Override
+    public Future<DishBatch> findByIds(List<String> prmIdsPlatos) {
+        return batch.request(MediaType.APPLICATION_JSON)
+                .async()
+                .post(Entity.json(prmIdsPlatos), DishBatch.class);
+    }
+}
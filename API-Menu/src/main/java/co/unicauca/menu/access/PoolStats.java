@@ -0,0 +1,33 @@
+package co.unicauca.menu.access;
+
+/**
+ * Metricas de adquisicion de conexiones del pool
+ *
+ * @author Michelle Vallejo
+ */
+public class PoolStats {
+
+    /**
+     * Conexiones entregadas por el pool
+     */
+    public final long adquiridas;
+    /**
+     * Solicitudes que terminaron en error o por tiempo de espera agotado
+     */
+    public final long fallidas;
+    /**
+     * Espera promedio por una conexion, en microsegundos
+     */
+    public final long esperaPromedioMicros;
+    /**
+     * Espera maxima por una conexion, en microsegundos
+     */
+    public final long esperaMaximaMicros;
+
+    public PoolStats(long adquiridas, long fallidas, long esperaPromedioMicros, long esperaMaximaMicros) {
+        this.adquiridas = adquiridas;
+        this.fallidas = fallidas;
+        this.esperaPromedioMicros = esperaPromedioMicros;
+        this.esperaMaximaMicros = esperaMaximaMicros;
+    }
+}
@@ -0,0 +1,100 @@
+package co.unicauca.menu.domain.entity;
+
+import co.unicauca.menu.infra.Utilities;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Dias de la semana en los que se puede visualizar un menu. En la base de
+ * datos los dias de un menu se guardan como una mascara de bits (lunes = 1,
+ * martes = 2, ..., domingo = 64); hacia afuera se usa el nombre en minúsculas
+ * y sin tildes, por ejemplo "sabado".
+ *
+ * @author Michelle Vallejo
+ */
+public enum Dia {
+    LUNES, MARTES, MIERCOLES, JUEVES, VIERNES, SABADO, DOMINGO;
+
+    /**
+     * Zona horaria de los restaurantes
+     */
+    public static final ZoneId ZONA = ZoneId.of("America/Bogota");
+
+    /**
+     * @return nombre con el que se guarda el dia
+     */
+    public String getNombre() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @return bit del dia en la mascara de dias de un menu
+     */
+    public int getBit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @param dias dias
+     * @return mascara con los bits de los dias
+     */
+    public static int mascara(Collection<Dia> dias) {
+        int mascara = 0;
+        for (Dia dia : dias) {
+            mascara |= dia.getBit();
+        }
+        return mascara;
+    }
+
+    /**
+     * @param mascara mascara de dias de un menu
+     * @return nombres de los dias de la mascara, en orden de la semana
+     */
+    public static List<String> nombres(int mascara) {
+        List<String> nombres = new ArrayList<>();
+        for (Dia dia : values()) {
+            if ((mascara & dia.getBit()) != 0) {
+                nombres.add(dia.getNombre());
+            }
+        }
+        return nombres;
+    }
+
+    /**
+     * @return el dia de hoy en la zona horaria de los restaurantes
+     */
+    public static Dia hoy() {
+        return de(LocalDate.now(ZONA).getDayOfWeek());
+    }
+
+    /**
+     * @param dia dia de la semana de java.time
+     * @return el dia equivalente
+     */
+    public static Dia de(DayOfWeek dia) {
+        return values()[dia.getValue() - 1];
+    }
+
+    /**
+     * Interpreta el nombre de un dia sin importar mayúsculas ni tildes
+     *
+     * @param nombre nombre del dia, por ejemplo "Miércoles"
+     * @return el dia, o null si el nombre no es un dia de la semana
+     */
+    public static Dia parse(String nombre) {
+        if (nombre == null) {
+            return null;
+        }
+        String normalizado = Utilities.normalize(nombre);
+        for (Dia dia : values()) {
+            if (dia.getNombre().equals(normalizado)) {
+                return dia;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package co.unicauca.menu.domain.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Respuesta de API-Plato al buscar varios platos por su id
+ *
+ * @author Michelle Vallejo
+ */
+public class DishBatch
+{
+    //Platos encontrados, en el orden en que se pidieron
+    private List<Dish> atrPlatos;
+    //Ids que no existen
+    private List<String> atrFaltantes;
+
+    public DishBatch()
+    {
+        atrPlatos = new ArrayList<>();
+        atrFaltantes = new ArrayList<>();
+    }
+
+    public DishBatch(List<Dish> atrPlatos, List<String> atrFaltantes)
+    {
+        this.atrPlatos = atrPlatos;
+        this.atrFaltantes = atrFaltantes;
+    }
+
+    public List<Dish> getAtrPlatos() {
+        return atrPlatos;
+    }
+
+    public void setAtrPlatos(List<Dish> atrPlatos) {
+        this.atrPlatos = atrPlatos;
+    }
+
+    public List<String> getAtrFaltantes() {
+        return atrFaltantes;
+    }
+
+    public void setAtrFaltantes(List<String> atrFaltantes) {
+        this.atrFaltantes = atrFaltantes;
+    }
+}
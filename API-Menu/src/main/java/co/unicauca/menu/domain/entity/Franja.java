@@ -0,0 +1,87 @@
+package co.unicauca.menu.domain.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Franja horaria en la que un menu está activo, por ejemplo de 07:00 a 10:30
+ * de lunes a viernes. Las horas van en formato HH:mm y la hora de fin puede
+ * ser 24:00 para indicar el fin del dia. La franja solo aplica en los dias
+ * que tiene en común con los dias de visualizacion de su menu.
+ *
+ * @author Michelle Vallejo
+ */
+public class Franja
+{
+    /**
+     * Minutos de un dia, la hora 24:00
+     */
+    public static final int MINUTOS_DIA = 24 * 60;
+    
+    private Long atrIdFranja;
+    private String atrIdMenu;
+    private List<String> atrDias;
+    private String atrHoraInicio;
+    private String atrHoraFin;
+
+    public Franja()
+    {
+        atrDias = new ArrayList<>();
+    }
+
+    public Long getAtrIdFranja() {
+        return atrIdFranja;
+    }
+
+    public void setAtrIdFranja(Long atrIdFranja) {
+        this.atrIdFranja = atrIdFranja;
+    }
+
+    public String getAtrIdMenu() {
+        return atrIdMenu;
+    }
+
+    public void setAtrIdMenu(String atrIdMenu) {
+        this.atrIdMenu = atrIdMenu;
+    }
+
+    public List<String> getAtrDias() {
+        return atrDias;
+    }
+
+    public void setAtrDias(List<String> atrDias) {
+        this.atrDias = atrDias;
+    }
+
+    public String getAtrHoraInicio() {
+        return atrHoraInicio;
+    }
+
+    public void setAtrHoraInicio(String atrHoraInicio) {
+        this.atrHoraInicio = atrHoraInicio;
+    }
+
+    public String getAtrHoraFin() {
+        return atrHoraFin;
+    }
+
+    public void setAtrHoraFin(String atrHoraFin) {
+        this.atrHoraFin = atrHoraFin;
+    }
+
+    /**
+     * Convierte una hora HH:mm en minutos desde el inicio del dia
+     *
+     * @param hora hora, de 00:00 a 24:00
+     * @return minutos, de 0 a 1440, o -1 si la hora no es válida
+     */
+    public static int minutos(String hora) {
+        if (hora == null || !hora.matches("\\d{2}:\\d{2}")) {
+            return -1;
+        }
+        int horas = Integer.parseInt(hora.substring(0, 2));
+        int minutos = Integer.parseInt(hora.substring(3));
+        int total = horas * 60 + minutos;
+        return minutos < 60 && total <= MINUTOS_DIA ? total : -1;
+    }
+}
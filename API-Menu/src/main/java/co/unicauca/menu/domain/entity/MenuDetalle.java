@@ -0,0 +1,108 @@
+package co.unicauca.menu.domain.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Menu con los datos completos de sus platos, resueltos contra API-Plato.
+ * Si API-Plato no responde a tiempo el detalle queda parcial: atrParcial es
+ * true y los ids que no se alcanzaron a resolver quedan en
+ * atrPlatosPendientes.
+ *
+ * @author Michelle Vallejo
+ */
+public class MenuDetalle
+{
+    private String atrIdMenu;
+    private String atrNomMenu;
+    private String atrIdRest;
+    private List<String> atrDiasVisualizacion;
+    //Platos resueltos
+    private List<Dish> atrPlatos;
+    //Ids de platos que API-Plato reporta como inexistentes
+    private List<String> atrPlatosFaltantes;
+    //Ids de platos que no se resolvieron por error o tiempo de espera
+    private List<String> atrPlatosPendientes;
+    private boolean atrParcial;
+
+    public MenuDetalle()
+    {
+        atrDiasVisualizacion = new ArrayList<>();
+        atrPlatos = new ArrayList<>();
+        atrPlatosFaltantes = new ArrayList<>();
+        atrPlatosPendientes = new ArrayList<>();
+    }
+
+    public MenuDetalle(Menu menu)
+    {
+        this();
+        this.atrIdMenu = menu.getAtrIdMenu();
+        this.atrNomMenu = menu.getAtrNomMenu();
+        this.atrIdRest = menu.getAtrIdRest();
+        this.atrDiasVisualizacion.addAll(menu.getAtrDiasVisualizacion());
+    }
+
+    public String getAtrIdMenu() {
+        return atrIdMenu;
+    }
+
+    public void setAtrIdMenu(String atrIdMenu) {
+        this.atrIdMenu = atrIdMenu;
+    }
+
+    public String getAtrNomMenu() {
+        return atrNomMenu;
+    }
+
+    public void setAtrNomMenu(String atrNomMenu) {
+        this.atrNomMenu = atrNomMenu;
+    }
+
+    public String getAtrIdRest() {
+        return atrIdRest;
+    }
+
+    public void setAtrIdRest(String atrIdRest) {
+        this.atrIdRest = atrIdRest;
+    }
+
+    public List<String> getAtrDiasVisualizacion() {
+        return atrDiasVisualizacion;
+    }
+
+    public void setAtrDiasVisualizacion(List<String> atrDiasVisualizacion) {
+        this.atrDiasVisualizacion = atrDiasVisualizacion;
+    }
+
+    public List<Dish> getAtrPlatos() {
+        return atrPlatos;
+    }
+
+    public void setAtrPlatos(List<Dish> atrPlatos) {
+        this.atrPlatos = atrPlatos;
+    }
+
+    public List<String> getAtrPlatosFaltantes() {
+        return atrPlatosFaltantes;
+    }
+
+    public void setAtrPlatosFaltantes(List<String> atrPlatosFaltantes) {
+        this.atrPlatosFaltantes = atrPlatosFaltantes;
+    }
+
+    public List<String> getAtrPlatosPendientes() {
+        return atrPlatosPendientes;
+    }
+
+    public void setAtrPlatosPendientes(List<String> atrPlatosPendientes) {
+        this.atrPlatosPendientes = atrPlatosPendientes;
+    }
+
+    public boolean isAtrParcial() {
+        return atrParcial;
+    }
+
+    public void setAtrParcial(boolean atrParcial) {
+        this.atrParcial = atrParcial;
+    }
+}
@@ -0,0 +1,33 @@
+package co.unicauca.menu.domain.service;
+
+import co.unicauca.menu.domain.entity.Menu;
+import co.unicauca.menu.infra.BoundedCache;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Cache de los menus visibles por dia y restaurante, compartido por toda la
+ * aplicación. Lo llena MenuService al consultar los menus disponibles y lo
+ * vacía cuando cambia un menu o sus dias de visualizacion. El tiempo de vida
+ * es corto porque los cambios hechos en otra instancia de Payara no lo
+ * invalidan. Las consultas que fallan en la base de datos no se guardan.
+ *
+ * @author Michelle Vallejo
+ */
+@ApplicationScoped
+public class DisponiblesCache extends BoundedCache<String, List<Menu>>
+{
+    /**
+     * Combinaciones de dia y restaurante que caben en el cache
+     */
+    private static final int TAMANO_MAXIMO = 20_000;
+    /**
+     * Segundos que vive una consulta en el cache
+     */
+    private static final long VIDA_SEGUNDOS = 60;
+    public DisponiblesCache() {
+        // Sin vida negativa: null es un error de la base de datos y no se guarda
+        super(TAMANO_MAXIMO, VIDA_SEGUNDOS, 0, TimeUnit.SECONDS);
+    }
+}
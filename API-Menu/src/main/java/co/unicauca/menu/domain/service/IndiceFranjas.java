@@ -0,0 +1,243 @@
+package co.unicauca.menu.domain.service;
+
+import co.unicauca.menu.access.IMenuRepository;
+import co.unicauca.menu.domain.entity.Dia;
+import co.unicauca.menu.domain.entity.Franja;
+import co.unicauca.menu.domain.entity.Menu;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+/**
+ * Indice en memoria de los menus activos por restaurante, dia y hora, para
+ * responder "qué menus están activos ahora" sin consultar la base de datos.
+ *
+ * Por cada restaurante y dia las franjas se parten en segmentos elementales:
+ * las horas de inicio y fin de todas las franjas, ordenadas, delimitan
+ * segmentos en los que el conjunto de menus activos no cambia. La consulta es
+ * una búsqueda binaria sobre esos límites. Los menus sin franjas están activos
+ * todo el dia en sus dias de visualizacion, y los que tienen franjas solo en
+ * los dias que las franjas tienen en común con los del menu, ver
+ * MenuRepository.findVentanas.
+ *
+ * El indice se arma al desplegar, se recarga por restaurante cuando
+ * MenuService cambia un menu, sus dias o sus franjas, y se recarga completo
+ * cada 5 minutos para recoger los cambios hechos en otras instancias. Si al
+ * recargar un restaurante aparece un menu que el indice tenía en otro, ese
+ * otro también se recarga, para que deje de mostrarlo. Si falla alguna
+ * consulta se conserva el indice anterior.
+ *
+ * @author Michelle Vallejo
+ */
+@Singleton
+@Startup
+@DependsOn("DatabaseBootstrap")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class IndiceFranjas {
+
+    @Inject
+    private IMenuRepository repository;
+
+    /**
+     * Indice por restaurante. Los valores no se modifican, se reemplazan
+     */
+    private final Map<String, Map<Dia, Segmentos>> restaurantes = new ConcurrentHashMap<>();
+    /**
+     * Restaurante en el que está indexado cada menu, para notar cuando un
+     * menu cambia de restaurante. Solo se usa dentro de las recargas
+     */
+    private final Map<String, String> restaurantePorMenu = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        recargarTodo();
+    }
+
+    /**
+     * Recarga todo el indice desde la base de datos
+     */
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    public synchronized void recargarTodo() {
+        long inicio = System.nanoTime();
+        List<Franja> franjas = repository.findVentanas(null);
+        if (franjas == null) {
+            return;
+        }
+        List<Menu> menus = repository.findMenus(null);
+        if (menus == null) {
+            return;
+        }
+        Map<String, Map<Dia, Segmentos>> nuevos = armar(menus, franjas);
+        restaurantes.keySet().retainAll(nuevos.keySet());
+        restaurantes.putAll(nuevos);
+        restaurantePorMenu.clear();
+        for (Menu menu : menus) {
+            restaurantePorMenu.put(menu.getAtrIdMenu(), menu.getAtrIdRest());
+        }
+        Logger.getLogger(IndiceFranjas.class.getName()).log(Level.FINE,
+                "Indice de franjas de {0} restaurantes en {1} ms",
+                new Object[]{nuevos.size(), (System.nanoTime() - inicio) / 1_000_000});
+    }
+
+    /**
+     * Recarga el indice de un restaurante y el de los restaurantes de los que
+     * vinieron sus menus, si alguno cambió de restaurante
+     *
+     * @param idRest id del restaurante
+     */
+    public synchronized void recargar(String idRest) {
+        Set<String> anteriores = recargarRestaurante(idRest);
+        if (anteriores == null) {
+            return;
+        }
+        for (String anterior : anteriores) {
+            recargarRestaurante(anterior);
+        }
+    }
+
+    /**
+     * Recarga el indice de un solo restaurante
+     *
+     * @return restaurantes en los que el indice tenía alguno de sus menus, o
+     * null si falló la consulta
+     */
+    private Set<String> recargarRestaurante(String idRest) {
+        List<Franja> franjas = repository.findVentanas(idRest);
+        List<Menu> menus = franjas == null ? null : repository.findMenus(idRest);
+        if (menus == null) {
+            return null;
+        }
+        Map<Dia, Segmentos> nuevo = armar(menus, franjas).get(idRest);
+        if (nuevo == null) {
+            restaurantes.remove(idRest);
+        } else {
+            restaurantes.put(idRest, nuevo);
+        }
+        Set<String> anteriores = new HashSet<>();
+        restaurantePorMenu.values().removeIf(idRest::equals);
+        for (Menu menu : menus) {
+            String anterior = restaurantePorMenu.put(menu.getAtrIdMenu(), idRest);
+            if (anterior != null) {
+                anteriores.add(anterior);
+            }
+        }
+        return anteriores;
+    }
+
+    /**
+     * Menus activos de un restaurante en un momento de la semana
+     *
+     * @param idRest id del restaurante
+     * @param dia dia
+     * @param minuto minutos desde el inicio del dia, de 0 a 1439
+     * @return menus activos ordenados por id, lista que no se debe modificar
+     */
+    public List<Menu> activos(String idRest, Dia dia, int minuto) {
+        Map<Dia, Segmentos> dias = restaurantes.get(idRest);
+        Segmentos segmentos = dias == null ? null : dias.get(dia);
+        return segmentos == null ? Collections.emptyList() : segmentos.en(minuto);
+    }
+
+    private Map<String, Map<Dia, Segmentos>> armar(List<Menu> menus, List<Franja> franjas) {
+        Map<String, Menu> porId = new HashMap<>();
+        for (Menu menu : menus) {
+            porId.put(menu.getAtrIdMenu(), menu);
+        }
+        // Franjas agrupadas por restaurante y dia
+        Map<String, Map<Dia, List<Intervalo>>> intervalos = new HashMap<>();
+        for (Franja franja : franjas) {
+            Menu menu = porId.get(franja.getAtrIdMenu());
+            if (menu == null) {
+                // Menu creado entre las dos consultas, entra en la próxima recarga
+                continue;
+            }
+            Intervalo intervalo = new Intervalo(Franja.minutos(franja.getAtrHoraInicio()),
+                    Franja.minutos(franja.getAtrHoraFin()), menu);
+            for (String nombre : franja.getAtrDias()) {
+                intervalos.computeIfAbsent(menu.getAtrIdRest(), k -> new EnumMap<>(Dia.class))
+                        .computeIfAbsent(Dia.parse(nombre), k -> new ArrayList<>())
+                        .add(intervalo);
+            }
+        }
+        Map<String, Map<Dia, Segmentos>> indice = new HashMap<>();
+        for (Map.Entry<String, Map<Dia, List<Intervalo>>> restaurante : intervalos.entrySet()) {
+            Map<Dia, Segmentos> dias = new EnumMap<>(Dia.class);
+            for (Map.Entry<Dia, List<Intervalo>> dia : restaurante.getValue().entrySet()) {
+                dias.put(dia.getKey(), new Segmentos(dia.getValue()));
+            }
+            indice.put(restaurante.getKey(), dias);
+        }
+        return indice;
+    }
+
+    private static final class Intervalo {
+
+        final int inicio;
+        final int fin;
+        final Menu menu;
+
+        Intervalo(int inicio, int fin, Menu menu) {
+            this.inicio = inicio;
+            this.fin = fin;
+            this.menu = menu;
+        }
+    }
+
+    /**
+     * Segmentos elementales de un dia: en [limites[i], limites[i + 1]) están
+     * activos menus[i]
+     */
+    private static final class Segmentos {
+
+        final int[] limites;
+        final List<List<Menu>> menus;
+
+        Segmentos(List<Intervalo> intervalos) {
+            TreeSet<Integer> puntos = new TreeSet<>();
+            for (Intervalo intervalo : intervalos) {
+                puntos.add(intervalo.inicio);
+                puntos.add(intervalo.fin);
+            }
+            limites = puntos.stream().mapToInt(Integer::intValue).toArray();
+            menus = new ArrayList<>(limites.length);
+            for (int i = 0; i < limites.length; i++) {
+                // Un menu con varias franjas en el segmento aparece una vez
+                TreeMap<String, Menu> activos = new TreeMap<>();
+                for (Intervalo intervalo : intervalos) {
+                    if (intervalo.inicio <= limites[i] && limites[i] < intervalo.fin) {
+                        activos.put(intervalo.menu.getAtrIdMenu(), intervalo.menu);
+                    }
+                }
+                menus.add(Collections.unmodifiableList(new ArrayList<>(activos.values())));
+            }
+        }
+
+        List<Menu> en(int minuto) {
+            int i = Arrays.binarySearch(limites, minuto);
+            if (i < 0) {
+                // Segmento que empieza en el límite anterior
+                i = -i - 2;
+            }
+            return i < 0 ? Collections.emptyList() : menus.get(i);
+        }
+    }
+}
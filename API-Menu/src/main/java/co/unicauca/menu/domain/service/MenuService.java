@@ -1,12 +1,31 @@
 package co.unicauca.menu.domain.service;
 
 import co.unicauca.menu.access.IMenuRepository;
+import co.unicauca.menu.access.IPlatoClient;
+import co.unicauca.menu.domain.entity.Dia;
+import co.unicauca.menu.domain.entity.DishBatch;
+import co.unicauca.menu.domain.entity.Franja;
 import co.unicauca.menu.domain.entity.Menu;
+import co.unicauca.menu.domain.entity.MenuDetalle;
 import co.unicauca.menu.domain.validators.ValidationError;
 import co.unicauca.menu.infra.DomainErrors;
 import co.unicauca.menu.infra.Error;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 
@@ -25,6 +44,40 @@ public class MenuService
     @Inject
     private IMenuRepository repository;
     
+    /**
+     * Errores de validación de la petición actual
+     */
+    @Inject
+    private DomainErrors domainErrors;
+    
+    /**
+     * Cliente de API-Plato para resolver el detalle de los platos
+     */
+    @Inject
+    private IPlatoClient platoClient;
+    
+    /**
+     * Cache de los menus visibles por dia y restaurante
+     */
+    @Inject
+    private DisponiblesCache disponibles;
+    
+    /**
+     * Indice en memoria de los menus activos por dia y hora
+     */
+    @Inject
+    private IndiceFranjas indiceFranjas;
+    
+    /**
+     * Tiempo máximo de espera por API-Plato al armar el detalle de un menu
+     */
+    private static final long ESPERA_PLATOS_MS = 800;
+    
+    /**
+     * Número máximo de platos que se pueden asignar a un menu en una petición
+     */
+    public static final int MAX_PLATOS = 500;
+    
      /**
      * Busca un Menu por su id
      *
@@ -37,10 +90,124 @@ public class MenuService
         return repository.findByMenuId(prmIdMenu);
     }
     
+    /**
+     * Version del menu, cambia con cada modificacion del menu, de sus dias o
+     * de sus platos
+     *
+     * @param prmIdMenu id del menu
+     * @return version, o null si el menu no existe
+     */
+    public Long findVersion(String prmIdMenu)
+    {
+        return repository.findVersion(prmIdMenu);
+    }
+    
     public List<Menu> findByIdRest(String prmIdRest){
         return repository.findByIdRest(prmIdRest);
     }
     
+    /**
+     * Busca los menus que ofrecen un plato, cada uno con su restaurante
+     *
+     * @param prmIdPlato id del plato
+     * @return lista de menus, ordenada por restaurante
+     */
+    public List<Menu> findByPlato(String prmIdPlato){
+        return repository.findByPlato(prmIdPlato);
+    }
+    
+    /**
+     * Busca los menus visibles un dia, de un restaurante o de todos. Se
+     * responde desde el cache; la base de datos se consulta una vez por dia y
+     * restaurante hasta que cambie algún menu o sus dias.
+     *
+     * @param prmDia nombre del dia, sin importar mayúsculas ni tildes; si es
+     * null se usa el dia de hoy
+     * @param prmIdRest id del restaurante, o null para todos
+     * @return lista de menus, que no se debe modificar, o null si el dia no
+     * es válido o falló la consulta; en ese caso el error tiene el código
+     * UNAVAILABLE
+     */
+    public List<Menu> findDisponibles(String prmDia, String prmIdRest){
+        Dia dia = prmDia == null || prmDia.isEmpty() ? Dia.hoy() : Dia.parse(prmDia);
+        if (dia == null) {
+            List<Error> errors = new ArrayList<>();
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Dia", "'" + prmDia + "' no es un dia de la semana"));
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        String idRest = prmIdRest == null || prmIdRest.isEmpty() ? null : prmIdRest;
+        String llave = dia.getNombre() + "|" + (idRest == null ? "*" : idRest);
+        List<Menu> menus = disponibles.get(llave, k -> {
+            List<Menu> consulta = repository.findDisponibles(dia, idRest);
+            return consulta == null ? null : Collections.unmodifiableList(consulta);
+        });
+        if (menus == null) {
+            // Una falla de la base de datos no es un dia sin menus
+            List<Error> errors = new ArrayList<>();
+            errors.add(new Error(ValidationError.UNAVAILABLE, "Menus", "No se pudieron consultar los menus disponibles, intente de nuevo"));
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        return menus;
+    }
+    
+    /**
+     * Busca los menus de un restaurante con sus platos y dias de
+     * visualizacion ya cargados
+     *
+     * @param prmIdRest id del restaurante
+     * @return lista de menus completos
+     */
+    public List<Menu> findByIdRestCompleto(String prmIdRest){
+        return repository.findByIdRestCompleto(prmIdRest);
+    }
+    
+    /**
+     * Busca un menu con el detalle de sus platos. Los ids de platos se piden
+     * a API-Plato en lotes concurrentes; si no responde dentro de
+     * ESPERA_PLATOS_MS se devuelve lo que haya llegado y el detalle queda
+     * marcado como parcial.
+     *
+     * @param prmIdMenu id del menu
+     * @return menu con sus platos, o null si no existe el menu
+     */
+    public MenuDetalle findDetalle(String prmIdMenu) {
+        Menu menu = repository.findByMenuIdCompleto(prmIdMenu);
+        if (menu == null) {
+            return null;
+        }
+        MenuDetalle detalle = new MenuDetalle(menu);
+        List<String> ids = menu.getAtrIdPlatos();
+        Map<List<String>, Future<DishBatch>> lotes = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i += IPlatoClient.MAX_LOTE) {
+            List<String> lote = ids.subList(i, Math.min(i + IPlatoClient.MAX_LOTE, ids.size()));
+            lotes.put(lote, platoClient.findByIds(lote));
+        }
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_PLATOS_MS);
+        for (Map.Entry<List<String>, Future<DishBatch>> lote : lotes.entrySet()) {
+            try {
+                DishBatch batch = lote.getValue().get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                detalle.getAtrPlatos().addAll(batch.getAtrPlatos());
+                detalle.getAtrPlatosFaltantes().addAll(batch.getAtrFaltantes());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                pendiente(detalle, lote);
+            } catch (ExecutionException | TimeoutException ex) {
+                Logger.getLogger(MenuService.class.getName()).log(Level.WARNING,
+                        "API-Plato no resolvio los platos del menu " + prmIdMenu, ex);
+                pendiente(detalle, lote);
+            }
+        }
+        return detalle;
+    }
+    
+    private void pendiente(MenuDetalle detalle, Map.Entry<List<String>, Future<DishBatch>> lote) {
+        lote.getValue().cancel(true);
+        detalle.setAtrParcial(true);
+        detalle.getAtrPlatosPendientes().addAll(lote.getKey());
+    }
+    
     public List<String> listaPlatos (String prmIdMenu){
         return repository.listarPlato(prmIdMenu);
     }
@@ -53,6 +220,49 @@ public class MenuService
         this.repository = repository;
     }
     
+    public void setPlatoClient(IPlatoClient platoClient)
+    {
+        this.platoClient = platoClient;
+    }
+    
+    public void setDisponiblesCache(DisponiblesCache disponibles)
+    {
+        this.disponibles = disponibles;
+    }
+    
+    public void setIndiceFranjas(IndiceFranjas indiceFranjas)
+    {
+        this.indiceFranjas = indiceFranjas;
+    }
+    
+    /**
+     * Actualiza las consultas en memoria después de cambiar un menu, sus dias
+     * o sus franjas
+     *
+     * @param idMenu id del menu que cambió
+     */
+    private void menuCambio(String idMenu)
+    {
+        Menu menu = repository.findByMenuId(idMenu);
+        menusCambiaron(menu == null ? null : menu.getAtrIdRest());
+    }
+    
+    /**
+     * Actualiza las consultas en memoria después de cambiar menus de unos
+     * restaurantes
+     *
+     * @param idRests ids de los restaurantes afectados
+     */
+    private void menusCambiaron(String... idRests)
+    {
+        disponibles.invalidateAll();
+        for (String idRest : new LinkedHashSet<>(Arrays.asList(idRests))) {
+            if (idRest != null) {
+                indiceFranjas.recargar(idRest);
+            }
+        }
+    }
+    
      /**
      * Busca todos los menu
      *
@@ -72,7 +282,7 @@ public class MenuService
     public boolean create(Menu newMenu) {
         List<Error> error = validateCreate(newMenu);
         if (!error.isEmpty()) {
-            DomainErrors.setErrors(error);
+            domainErrors.setErrors(error);
             return false;
         }
         //Si pasa las validaciones se graba en la bd
@@ -140,14 +350,17 @@ public class MenuService
     public boolean update(String idMenu, Menu newMenu) {
         List<Error> errors = validateUpdate(idMenu, newMenu);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
+            domainErrors.setErrors(errors);
             return false;
         }
         Menu menuAux = this.findByMenuId(idMenu);
+        String idRestAnterior = menuAux.getAtrIdRest();
         menuAux.setAtrNomMenu(newMenu.getAtrNomMenu());
         menuAux.setAtrIdRest(newMenu.getAtrIdRest());
         
-        return repository.update(menuAux); 
+        boolean actualizado = repository.update(menuAux);
+        menusCambiaron(idRestAnterior, menuAux.getAtrIdRest());
+        return actualizado;
 }
 
      /**
@@ -173,7 +386,8 @@ public class MenuService
     }
     
     /**
-     * Elimina un menu de la base de datos
+     * Elimina un menu de la base de datos, con sus dias de visualizacion y
+     * sus platos
      *
      * @param idMenu id del manu
      * @return true si lo elimina, false si no
@@ -182,32 +396,18 @@ public class MenuService
         //Validate usuario
         List<Error> errors = validateDelete(idMenu);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
+            domainErrors.setErrors(errors);
             return false;
         }
-        // Pasada la validación, se puede borrar de la bd
-         eliminarTodo(idMenu);
-        return repository.delete(idMenu);
+        // Pasada la validación, se puede borrar de la bd. Los dias están en
+        // la fila del menu y los platos se borran en cascada en la misma
+        // sentencia
+        Menu menu = repository.findByMenuId(idMenu);
+        boolean eliminado = repository.delete(idMenu);
+        menusCambiaron(menu == null ? null : menu.getAtrIdRest());
+        return eliminado;
     }
 
-     public void eliminarTodo(String idMenu){
-         List<String> dias = repository.listarDia(idMenu);
-         
-         if(dias !=null){
-             for(int i= 0;i< dias.size();i=0){
-                 deleteVisualizacion(idMenu, dias.get(i));
-             }
-         }
-         
-         List<String> plato = repository.listarPlato(idMenu);
-         
-         if(plato !=null){
-             for(int i= 0;i< plato.size();i=0){
-                 deleteOfrece(idMenu, plato.get(i));
-             }
-         }
-         
-     }
      /**
      * Valida que el menu exista para poder eliminarlo de la BD
      *
@@ -232,7 +432,8 @@ public class MenuService
      * Crea una nueva visualizacion
      *
      * @param idMenu id del menu que se desea guardar
-     * @param dia dia que desea visualizar el menu
+     * @param dia dia que desea visualizar el menu, sin importar mayúsculas
+     * ni tildes
      * @return true si lo crea, false si no
      */
    
@@ -240,26 +441,197 @@ public class MenuService
     { 
         
         List<Error> errors = validarCamposVisualizacion( idMenu,  dia);
+        Dia diaAux = Dia.parse(dia);
+        Integer mascara = repository.findDias(idMenu);
          
         //Validar que exista el ID Menu
-        if(repository.findByMenuId(idMenu)==null){
+        if(mascara == null){
             // El menu no existe
             Error error = new Error(ValidationError.INVALID_FIELD, "ID Menu", "El no existe un menu con ese ID");
             errors.add(error);
         }
         
         //Validar que no exista ya un registro previo
-        if(existeVisualizacion(idMenu, dia)){
+        else if(diaAux != null && (mascara & diaAux.getBit()) != 0){
             
             Error error = new Error(ValidationError.INVALID_FIELD, "ID Menu, Dia", "Ya existe una visualizacion");
             errors.add(error);
             
         }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return false;
+        }
         
         //Si pasa las validaciones se graba en la base de datos 
-        return repository.createVisualizacion(idMenu, dia);
+        boolean creado = repository.createVisualizacion(idMenu, diaAux);
+        menuCambio(idMenu);
+        return creado;
+    }
+    
+    
+    /**
+     * Reemplaza los dias de visualizacion de un menu con una sola sentencia.
+     * Los nombres de los dias se aceptan sin importar mayúsculas ni tildes.
+     *
+     * @param idMenu id del menu
+     * @param dias dias en los que se debe visualizar el menu, puede ser vacía
+     * @return dias del menu después del cambio, en orden de la semana, o null
+     * si no se pudo
+     */
+    public List<String> asignarDias(String idMenu, List<String> dias)
+    {
+        List<Error> errors = new ArrayList<>();
+        Set<Dia> semana = EnumSet.noneOf(Dia.class);
+        if (dias == null) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Dias", "La lista de dias es obligatoria"));
+        } else {
+            for (String nombre : dias) {
+                Dia dia = Dia.parse(nombre);
+                if (dia == null) {
+                    errors.add(new Error(ValidationError.INVALID_FIELD, "Dias", "'" + nombre + "' no es un dia de la semana"));
+                } else {
+                    semana.add(dia);
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        Integer resultado = repository.asignarDias(idMenu, Dia.mascara(semana));
+        menuCambio(idMenu);
+        if (resultado == null) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "ID Menu", "El menu no existe o no se pudieron guardar los dias"));
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        return Dia.nombres(resultado);
     }
     
+    /**
+     * Busca las franjas horarias de un menu
+     *
+     * @param idMenu id del menu
+     * @return franjas ordenadas por hora de inicio
+     */
+    public List<Franja> findFranjas(String idMenu)
+    {
+        return repository.findFranjas(idMenu);
+    }
+    
+    /**
+     * Agrega una franja horaria a un menu. Mientras un menu no tenga franjas
+     * está activo todo el dia en sus dias de visualizacion.
+     *
+     * @param idMenu id del menu
+     * @param franja dias y horas de la franja
+     * @return franja creada, con su id, o null si no se pudo crear
+     */
+    public Franja createFranja(String idMenu, Franja franja)
+    {
+        List<Error> errors = validarFranja(franja);
+        if (repository.findByMenuId(idMenu) == null) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "ID Menu", "El id del menu no existe"));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        franja.setAtrIdMenu(idMenu);
+        Franja creada = repository.createFranja(franja);
+        if (creada == null) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Franja", "No se pudo guardar la franja"));
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        menuCambio(idMenu);
+        return creada;
+    }
+    
+    /**
+     * Elimina una franja horaria de un menu
+     *
+     * @param idMenu id del menu
+     * @param idFranja id de la franja
+     * @return true si la elimina, false si no
+     */
+    public boolean deleteFranja(String idMenu, long idFranja)
+    {
+        if (!repository.deleteFranja(idMenu, idFranja)) {
+            List<Error> errors = new ArrayList<>();
+            errors.add(new Error(ValidationError.INVALID_FIELD, "ID Franja", "El menu no tiene una franja con ese id"));
+            domainErrors.setErrors(errors);
+            return false;
+        }
+        menuCambio(idMenu);
+        return true;
+    }
+    
+    /**
+     * Menus de un restaurante activos en un momento de la semana. Se
+     * responde desde el indice en memoria, sin consultar la base de datos.
+     *
+     * @param idRest id del restaurante
+     * @param dia nombre del dia, si es null se usa el dia de hoy
+     * @param hora hora HH:mm, si es null se usa la hora actual
+     * @return menus activos, lista que no se debe modificar, o null si el dia
+     * o la hora no son válidos
+     */
+    public List<Menu> findActivos(String idRest, String dia, String hora)
+    {
+        List<Error> errors = new ArrayList<>();
+        LocalDateTime ahora = LocalDateTime.now(Dia.ZONA);
+        Dia diaAux = dia == null || dia.isEmpty() ? Dia.de(ahora.getDayOfWeek()) : Dia.parse(dia);
+        int minuto = hora == null || hora.isEmpty() ? ahora.getHour() * 60 + ahora.getMinute() : Franja.minutos(hora);
+        if (diaAux == null) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Dia", "'" + dia + "' no es un dia de la semana"));
+        }
+        if (minuto < 0 || minuto >= Franja.MINUTOS_DIA) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Hora", "La hora debe tener el formato HH:mm, de 00:00 a 23:59"));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        return indiceFranjas.activos(idRest, diaAux, minuto);
+    }
+    
+    /**
+     * Valida los dias y horas de una franja
+     *
+     * @param franja franja
+     * @return lista de errores de negocio
+     */
+    private List<Error> validarFranja(Franja franja)
+    {
+        List<Error> errors = new ArrayList<>();
+        if (franja == null) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Franja", "La franja es obligatoria"));
+            return errors;
+        }
+        if (franja.getAtrDias() == null || franja.getAtrDias().isEmpty()) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Dias", "La franja debe tener al menos un dia"));
+        } else {
+            for (String nombre : franja.getAtrDias()) {
+                if (Dia.parse(nombre) == null) {
+                    errors.add(new Error(ValidationError.INVALID_FIELD, "Dias", "'" + nombre + "' no es un dia de la semana"));
+                }
+            }
+        }
+        int inicio = Franja.minutos(franja.getAtrHoraInicio());
+        int fin = Franja.minutos(franja.getAtrHoraFin());
+        if (inicio < 0 || inicio >= Franja.MINUTOS_DIA) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Hora inicio", "La hora de inicio debe tener el formato HH:mm, de 00:00 a 23:59"));
+        }
+        if (fin < 0) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Hora fin", "La hora de fin debe tener el formato HH:mm, de 00:01 a 24:00"));
+        }
+        if (inicio >= 0 && fin >= 0 && inicio >= fin) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Hora fin", "La hora de fin debe ser posterior a la de inicio, las franjas no cruzan la medianoche"));
+        }
+        return errors;
+    }
     
     public boolean deleteVisualizacion(String idMenu, String dia)
     {
@@ -270,24 +642,22 @@ public class MenuService
             Error error = new Error(ValidationError.INVALID_FIELD, "ID Menu, Dia", "NO existe una visualizacion");
             errors.add(error);
         }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return false;
+        }
         
        // Pasada la validación, se puede borrar de la bd
-        return repository.deleteVisualizacion(idMenu,dia);
+        boolean eliminado = repository.deleteVisualizacion(idMenu, Dia.parse(dia));
+        menuCambio(idMenu);
+        return eliminado;
         
     }
     
     public boolean existeVisualizacion (String idMenu, String dia){
-        List<String> dias = repository.listarDia(idMenu);
-       
-        if(dias !=null){
-            for (int i=0; i < dias.size(); i++){
-                if(dias.get(i).equals(dia))
-                {
-                    return true;
-                }
-            }
-        }
-        return false;
+        Dia diaAux = Dia.parse(dia);
+        Integer mascara = repository.findDias(idMenu);
+        return diaAux != null && mascara != null && (mascara & diaAux.getBit()) != 0;
     } 
     /*
      *  Validar que no esten nulos el ID Menu y el dia 
@@ -305,6 +675,11 @@ public class MenuService
          {
              Error error = new Error(ValidationError.EMPTY_FIELD, "Dia ", "Es obligatorio que el menu tenga un dia de visualizacion");
              errors.add(error);
+         }
+         else if (Dia.parse(dia) == null)
+         {
+             Error error = new Error(ValidationError.INVALID_FIELD, "Dia ", "'" + dia + "' no es un dia de la semana");
+             errors.add(error);
          }
           return errors;    
     }
@@ -341,6 +716,37 @@ public class MenuService
     }
     
     
+    /**
+     * Asigna varios platos a un menu en una sola transacción
+     *
+     * @param idMenu id del menu
+     * @param platos ids de los platos, como máximo MAX_PLATOS
+     * @param reemplazar true para que el menu quede solo con estos platos,
+     * false para agregarlos a los que ya tiene
+     * @return platos del menu después del cambio, o null si no se pudo
+     */
+    public List<String> asignarPlatos(String idMenu, List<String> platos, boolean reemplazar)
+    {
+        List<Error> errors = new ArrayList<>();
+        if (platos == null) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Platos", "La lista de platos es obligatoria"));
+        } else if (platos.size() > MAX_PLATOS) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Platos", "Se pueden asignar máximo " + MAX_PLATOS + " platos por petición"));
+        } else if (platos.stream().anyMatch(plato -> plato == null || plato.isEmpty())) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Platos", "Los ids de los platos no pueden estar vacios"));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        List<String> resultado = repository.asignarPlatos(idMenu, new LinkedHashSet<>(platos), reemplazar);
+        if (resultado == null) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "ID Menu", "El menu no existe o no se pudieron guardar los platos"));
+            domainErrors.setErrors(errors);
+        }
+        return resultado;
+    }
+    
     public boolean deleteOfrece(String idMenu, String plato)
     {
         List<Error> errors = validarCamposOfrece( idMenu,plato);
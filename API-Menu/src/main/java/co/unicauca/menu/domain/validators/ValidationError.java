@@ -6,5 +6,5 @@ package co.unicauca.menu.domain.validators;
  * @author Libardo, Julio
  */
 public enum ValidationError {
-    INVALID_FIELD, EMPTY_FIELD;
+    INVALID_FIELD, EMPTY_FIELD, UNAVAILABLE;
 }
@@ -0,0 +1,202 @@
+package co.unicauca.menu.infra;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache en memoria de tamaño acotado con expiración por tiempo.
+ *
+ * El desalojo tiene en cuenta la frecuencia de uso. Las entradas nuevas llegan
+ * a una cola de prueba pequeña; si se vuelven a leer antes de salir de ella
+ * pasan a la cola principal, si no se desalojan. En la cola principal se
+ * recorre un reloj: a las entradas usadas se les baja la frecuencia y se les
+ * da otra vuelta, la primera sin usos se desaloja. Así una consulta masiva de
+ * una sola vez no saca del cache a los datos que se leen todo el tiempo.
+ *
+ * Las búsquedas sin resultado también se guardan, con un tiempo de vida más
+ * corto, para no consultar una y otra vez un id que no existe.
+ *
+ * @param <K> tipo de la llave
+ * @param <V> tipo del valor
+ * @author Libardo, Julio
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Frecuencia máxima que acumula una entrada
+     */
+    private static final int FRECUENCIA_MAXIMA = 15;
+
+    private final int tamanoMaximo;
+    private final long vidaNanos;
+    private final long vidaNegativaNanos;
+
+    private final ConcurrentHashMap<K, Entrada<K, V>> entradas = new ConcurrentHashMap<>();
+    /**
+     * Cola de prueba, por donde entran las entradas nuevas
+     */
+    private final Queue<Entrada<K, V>> prueba = new ConcurrentLinkedQueue<>();
+    /**
+     * Reloj de las entradas que se han leído más de una vez
+     */
+    private final Queue<Entrada<K, V>> principal = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger enPrueba = new AtomicInteger();
+    private final AtomicInteger enColas = new AtomicInteger();
+
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    /**
+     * @param tamanoMaximo número máximo de entradas
+     * @param vida tiempo de vida de una entrada
+     * @param vidaNegativa tiempo de vida de una búsqueda sin resultado; si es
+     * 0 las búsquedas sin resultado no se guardan
+     * @param unidad unidad de los tiempos de vida
+     */
+    public BoundedCache(int tamanoMaximo, long vida, long vidaNegativa, TimeUnit unidad) {
+        this.tamanoMaximo = tamanoMaximo;
+        this.vidaNanos = unidad.toNanos(vida);
+        this.vidaNegativaNanos = unidad.toNanos(vidaNegativa);
+    }
+
+    /**
+     * Busca una llave en el cache y, si no está o expiró, la carga
+     *
+     * @param llave llave a buscar
+     * @param cargador función que consulta el valor cuando no está en cache;
+     * puede devolver null
+     * @return el valor, o null si el cargador no lo encontró
+     */
+    public V get(K llave, Function<K, V> cargador) {
+        Entrada<K, V> entrada = entradas.get(llave);
+        long ahora = System.nanoTime();
+        if (entrada != null && entrada.vigente(ahora)) {
+            aciertos.incrementAndGet();
+            entrada.usar();
+            return entrada.valor;
+        }
+        fallos.incrementAndGet();
+        long antes = invalidaciones.get();
+        V valor = cargador.apply(llave);
+        if (valor == null && vidaNegativaNanos == 0) {
+            return null;
+        }
+        Entrada<K, V> nueva = new Entrada<>(llave, valor,
+                ahora + (valor == null ? vidaNegativaNanos : vidaNanos));
+        // Si hubo una invalidación mientras se cargaba, el valor puede estar
+        // desactualizado y no se guarda
+        if (entradas.compute(llave, (k, actual) -> invalidaciones.get() == antes ? nueva : actual) == nueva) {
+            prueba.add(nueva);
+            enPrueba.incrementAndGet();
+            enColas.incrementAndGet();
+            desalojar();
+        }
+        return valor;
+    }
+
+    /**
+     * Saca una llave del cache, se usa cuando cambia el dato
+     *
+     * @param llave llave a invalidar
+     */
+    public void invalidate(K llave) {
+        entradas.compute(llave, (k, actual) -> {
+            invalidaciones.incrementAndGet();
+            return null;
+        });
+    }
+
+    /**
+     * Vacía el cache
+     */
+    public void invalidateAll() {
+        invalidaciones.incrementAndGet();
+        entradas.clear();
+    }
+
+    /**
+     * @return contadores de uso del cache
+     */
+    public CacheStats getStats() {
+        return new CacheStats(entradas.size(), tamanoMaximo, aciertos.get(), fallos.get(), desalojos.get());
+    }
+
+    private void desalojar() {
+        if (entradas.size() <= tamanoMaximo && enColas.get() <= 2 * tamanoMaximo) {
+            return;
+        }
+        synchronized (prueba) {
+            if (enColas.get() > 2 * tamanoMaximo) {
+                // Descarta de las colas las entradas invalidadas o reemplazadas
+                prueba.removeIf(entrada -> entradas.get(entrada.llave) != entrada);
+                principal.removeIf(entrada -> entradas.get(entrada.llave) != entrada);
+                enPrueba.set(prueba.size());
+                enColas.set(enPrueba.get() + principal.size());
+            }
+            long ahora = System.nanoTime();
+            while (entradas.size() > tamanoMaximo) {
+                boolean dePrueba = enPrueba.get() > tamanoMaximo / 10 || principal.isEmpty();
+                Entrada<K, V> entrada = dePrueba ? prueba.poll() : principal.poll();
+                if (entrada == null) {
+                    return;
+                }
+                enColas.decrementAndGet();
+                if (dePrueba) {
+                    enPrueba.decrementAndGet();
+                }
+                if (entradas.get(entrada.llave) != entrada) {
+                    // Entrada invalidada o reemplazada
+                    continue;
+                }
+                if (entrada.vigente(ahora) && entrada.segundaOportunidad()) {
+                    principal.add(entrada);
+                    enColas.incrementAndGet();
+                } else if (entradas.remove(entrada.llave, entrada)) {
+                    desalojos.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static final class Entrada<K, V> {
+
+        final K llave;
+        final V valor;
+        final long expiraNanos;
+        volatile int frecuencia;
+
+        Entrada(K llave, V valor, long expiraNanos) {
+            this.llave = llave;
+            this.valor = valor;
+            this.expiraNanos = expiraNanos;
+        }
+
+        boolean vigente(long ahora) {
+            return ahora - expiraNanos < 0;
+        }
+
+        void usar() {
+            if (frecuencia < FRECUENCIA_MAXIMA) {
+                frecuencia++;
+            }
+        }
+
+        /**
+         * Baja la frecuencia a la mitad
+         *
+         * @return true si la entrada se había usado y merece otra vuelta
+         */
+        boolean segundaOportunidad() {
+            int actual = frecuencia;
+            frecuencia = actual / 2;
+            return actual > 0;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package co.unicauca.menu.infra;
 
+import java.text.Normalizer;
+import java.util.Locale;
+
 /**
  * Utilidades varias utilizadas por otras clases
  *
@@ -27,4 +30,17 @@ public class Utilities {
         return resultado;
     }
 
+    /**
+     * Normaliza un texto para compararlo: sin espacios al inicio y al final,
+     * en minúsculas y sin tildes
+     *
+     * @param str texto a normalizar
+     * @return texto normalizado
+     */
+    public static String normalize(String str) {
+        String sinTildes = Normalizer.normalize(str.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
 }
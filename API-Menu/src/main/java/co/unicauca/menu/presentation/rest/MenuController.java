@@ -1,10 +1,15 @@
 package co.unicauca.menu.presentation.rest;
 
+import co.unicauca.menu.domain.entity.Franja;
 import co.unicauca.menu.domain.entity.Menu;
+import co.unicauca.menu.domain.entity.MenuDetalle;
 import co.unicauca.menu.domain.service.MenuService;
+import co.unicauca.menu.domain.validators.ValidationError;
 import co.unicauca.menu.infra.DomainErrors;
+import co.unicauca.menu.infra.Error;
 import co.unicauca.menu.infra.JsonResponse;
 import java.util.List;
+import java.util.function.Supplier;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -15,8 +20,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
 
 /**
  * API REST de los servicios web. La anotación @Path indica la URL en la 
@@ -36,6 +47,25 @@ public class MenuController {
     @Inject
     private MenuService service;
     
+    /**
+     * Errores de validación de la petición actual
+     */
+    @Inject
+    private DomainErrors domainErrors;
+    
+    /**
+     * Los clientes pueden guardar las respuestas pero deben validarlas con el
+     * ETag antes de usarlas
+     */
+    private static final CacheControl REVALIDAR = new CacheControl();
+    
+    static {
+        REVALIDAR.setNoCache(true);
+    }
+    
+    private static final List<Variant> VARIANTES_MENU = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE, MediaType.APPLICATION_XML_TYPE).build();
+    
     public MenuController() {
         service = new MenuService();
     }
@@ -52,19 +82,43 @@ public class MenuController {
     }
     
     /*
+        Responde con ETag; si el cliente envía la etiqueta que ya tiene en
+        If-None-Match y el menu no ha cambiado, recibe 304 sin cuerpo.
         Su uso desde consola mediante client url:
         curl -X GET http://localhost:8084/API-Menu/menu-service/menu/100 
+        curl -i -H 'If-None-Match: "100-1-menu-json"' http://localhost:8084/API-Menu/menu-service/menu/100 
 
      */
     
     @GET
     @Path("{idMenu}")
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    public Menu findByMenuId(@PathParam("idMenu") String id) {
-        return service.findByMenuId(id);
+    public Response findByMenuId(@PathParam("idMenu") String id, @Context Request request) {
+        Variant variant = request.selectVariant(VARIANTES_MENU);
+        if (variant == null) {
+            variant = VARIANTES_MENU.get(0);
+        }
+        String tipo = "menu-" + variant.getMediaType().getSubtype();
+        return condicional(request, id, tipo, () -> service.findByMenuId(id)).variant(variant).build();
     }
     
     
+    /*
+        Menu con el detalle de sus platos (nombre, precio, ...) resuelto
+        contra API-Plato. Si API-Plato no responde a tiempo el resultado
+        viene con atrParcial en true y los ids en atrPlatosPendientes.
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Menu/menu-service/menu/detalle/100 
+
+     */
+    
+    @GET
+    @Path("/detalle/{idMenu}")
+    @Produces({MediaType.APPLICATION_JSON})
+    public MenuDetalle findDetalle(@PathParam("idMenu") String idMenu) {
+        return service.findDetalle(idMenu);
+    }
+    
     /*
         Su uso desde consola mediante client url:
         curl -X GET http://localhost:8084/API-Menu/menu-service/menu/findIdRest100 
@@ -78,6 +132,136 @@ public class MenuController {
         return service.findByIdRest(id);
     }
     
+    /*
+        Devuelve los menus del restaurante con atrIdPlatos y
+        atrDiasVisualizacion ya cargados, evita llamar lisPlatos y lisDia
+        por cada menu.
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Menu/menu-service/menu/findIdRest/500/completo 
+
+     */
+    
+    @GET
+    @Path("/findIdRest/{idRest}/completo")
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    public List<Menu> findByIdRestCompleto(@PathParam("idRest") String idRest) {
+        return service.findByIdRestCompleto(idRest);
+    }
+    
+    /*
+        Menus visibles un dia (por defecto hoy) de un restaurante, o de todos
+        si no se envía idRest. Se responde desde un cache por dia y
+        restaurante que se vacía cuando cambian los menus o sus dias. Responde
+        400 si el dia no es válido y 503 si falla la base de datos.
+        Su uso desde consola mediante client url:
+        curl -X GET 'http://localhost:8084/API-Menu/menu-service/menu/disponibles?dia=sabado&idRest=500' 
+
+     */
+    
+    @GET
+    @Path("/disponibles")
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response findDisponibles(@QueryParam("dia") String dia, @QueryParam("idRest") String idRest) {
+        List<Menu> menus = service.findDisponibles(dia, idRest);
+        if (menus == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron consultar los menus", domainErrors.getErrors());
+            Response.Status status = noDisponible(domainErrors.getErrors()) ? Response.Status.SERVICE_UNAVAILABLE : Response.Status.BAD_REQUEST;
+            return Response.status(status).entity(resp).build();
+        }
+        return Response.ok().entity(menus).build();
+    }
+    
+    /*
+        Menus de un restaurante activos en un momento de la semana, por
+        defecto ahora. Se responde desde un indice en memoria de las franjas
+        horarias. Los menus sin franjas están activos todo el dia en sus
+        dias de visualizacion.
+        Su uso desde consola mediante client url:
+        curl -X GET 'http://localhost:8084/API-Menu/menu-service/menu/activos/500?dia=lunes&hora=08:15' 
+
+     */
+    
+    @GET
+    @Path("/activos/{idRest}")
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response findActivos(@PathParam("idRest") String idRest, @QueryParam("dia") String dia, @QueryParam("hora") String hora) {
+        List<Menu> menus = service.findActivos(idRest, dia, hora);
+        if (menus == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron consultar los menus", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(menus).build();
+    }
+    
+    /*
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Menu/menu-service/menu/100/franjas 
+
+     */
+    
+    @GET
+    @Path("{idMenu}/franjas")
+    @Produces({MediaType.APPLICATION_JSON})
+    public List<Franja> findFranjas(@PathParam("idMenu") String idMenu) {
+        return service.findFranjas(idMenu);
+    }
+    
+    /*
+        Agrega una franja horaria al menu. Responde con la franja creada.
+        Su uso desde consola mediante client url:
+        curl -X POST \
+          http://localhost:8084/API-Menu/menu-service/menu/100/franjas 
+          -H 'Content-Type: application/json' \
+          -d '{"atrDias":["lunes","martes","miercoles","jueves","viernes"],
+               "atrHoraInicio":"07:00",
+               "atrHoraFin":"10:30"
+        }'
+    */
+    @POST
+    @Path("{idMenu}/franjas")
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response createFranja(@PathParam("idMenu") String idMenu, Franja franja) {
+        Franja creada = service.createFranja(idMenu, franja);
+        if (creada == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudo crear la franja", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(creada).build();
+    }
+    
+    /*
+        Su uso desde consola mediante client url:
+        curl -X DELETE http://localhost:8084/API-Menu/menu-service/menu/100/franjas/1 
+
+     */
+    @DELETE
+    @Path("{idMenu}/franjas/{idFranja}")
+    public Response deleteFranja(@PathParam("idMenu") String idMenu, @PathParam("idFranja") long idFranja) {
+        JsonResponse resp;
+        if (service.deleteFranja(idMenu, idFranja)) {
+            resp = new JsonResponse(true, "Franja eliminada con éxito", null);
+        } else {
+            resp = new JsonResponse(false, "No se pudo eliminar la franja", domainErrors.getErrors());
+        }
+        return Response.ok().entity(resp).build();
+    }
+    
+    /*
+        Menus que ofrecen un plato, con el restaurante de cada uno en
+        atrIdRest. Sirve para saber a quién afecta borrar o cambiar un plato.
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Menu/menu-service/menu/findByPlato/123 
+
+     */
+    
+    @GET
+    @Path("/findByPlato/{idPlato}")
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    public List<Menu> findByPlato(@PathParam("idPlato") String idPlato) {
+        return service.findByPlato(idPlato);
+    }
+    
     /*
         Su uso desde consola mediante client url:
         curl -X POST \
@@ -96,7 +280,7 @@ public class MenuController {
         if (service.create(menu)) {
             resp = new JsonResponse(true, "Menu creado con éxito", null);
         } else {
-            resp = new JsonResponse(false, "No se pudo crear el Menu", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo crear el Menu", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     } 
@@ -120,7 +304,7 @@ public class MenuController {
         if (service.createVisualizacion(idMenu, dia)) {
             resp = new JsonResponse(true, "Dia agregado", null);
         } else {
-            resp = new JsonResponse(false, "No se pudo agregar el dia", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo agregar el dia", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     }     
@@ -145,11 +329,77 @@ public class MenuController {
         if (service.createOfrece(idMenu, idplato)) {
             resp = new JsonResponse(true, "Plato agregado", null);
         } else {
-            resp = new JsonResponse(false, "No se pudo agregar plato", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo agregar plato", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     } 
     
+    /*
+        Reemplaza la semana completa de visualizacion del menu en una sola
+        transacción. Una lista vacía deja el menu sin dias.
+        Responde con los dias del menu en orden de la semana.
+        Su uso desde consola mediante client url:
+        curl -X PUT \
+          http://localhost:8084/API-Menu/menu-service/menu/100/dias 
+          -H 'Content-Type: application/json' \
+          -d '["lunes", "miercoles", "sabado"]'
+    */
+    @PUT
+    @Path("{idMenu}/dias")
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response asignarDias(@PathParam("idMenu") String idMenu, List<String> dias) {
+        List<String> resultado = service.asignarDias(idMenu, dias);
+        if (resultado == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron asignar los dias", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(resultado).build();
+    }
+    
+    /*
+        Deja el menu solo con los platos de la lista, en una sola transacción.
+        Responde con los platos que quedan en el menu.
+        Su uso desde consola mediante client url:
+        curl -X PUT \
+          http://localhost:8084/API-Menu/menu-service/menu/100/platos 
+          -H 'Content-Type: application/json' \
+          -d '["123", "234", "345"]'
+    */
+    @PUT
+    @Path("{idMenu}/platos")
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response reemplazarPlatos(@PathParam("idMenu") String idMenu, List<String> platos) {
+        return asignarPlatos(idMenu, platos, true);
+    }
+    
+    /*
+        Agrega los platos de la lista a los que ya tiene el menu, en una sola
+        transacción. Responde con los platos que quedan en el menu.
+        Su uso desde consola mediante client url:
+        curl -X POST \
+          http://localhost:8084/API-Menu/menu-service/menu/100/platos 
+          -H 'Content-Type: application/json' \
+          -d '["456", "567"]'
+    */
+    @POST
+    @Path("{idMenu}/platos")
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response agregarPlatos(@PathParam("idMenu") String idMenu, List<String> platos) {
+        return asignarPlatos(idMenu, platos, false);
+    }
+    
+    private Response asignarPlatos(String idMenu, List<String> platos, boolean reemplazar) {
+        List<String> resultado = service.asignarPlatos(idMenu, platos, reemplazar);
+        if (resultado == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron asignar los platos", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(resultado).build();
+    }
+    
     /*
         Su uso desde consola mediante client url:
         curl -X PUT \
@@ -169,7 +419,7 @@ public class MenuController {
         if (service.update(idMenu, menu)) {
             resp = new JsonResponse(true, "Menu modificado con éxito", null);
         } else {
-            resp = new JsonResponse(false, "No se pudo modificar el menu", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo modificar el menu", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
 
@@ -189,7 +439,7 @@ public class MenuController {
             resp = new JsonResponse(true, "Menu eliminado con éxito", null);
 
         } else {
-            resp = new JsonResponse(false, "No se pudo eliminar el menu", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo eliminar el menu", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
 
@@ -209,7 +459,7 @@ public class MenuController {
             resp = new JsonResponse(true, "Dia eliminado con éxito", null);
 
         } else {
-            resp = new JsonResponse(false, "No se pudo eliminar el dia ", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo eliminar el dia ", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     }
@@ -228,7 +478,7 @@ public class MenuController {
             resp = new JsonResponse(true, "plato eliminado con éxito", null);
 
         } else {
-            resp = new JsonResponse(false, "No se pudo eliminar el plato ", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo eliminar el plato ", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     }
@@ -241,8 +491,8 @@ public class MenuController {
     @GET
     @Path("/lisPlatos/{idMenu}")
     @Produces({MediaType.APPLICATION_JSON})
-    public List<String> findPlato(@PathParam("idMenu") String idMenu) {
-        return service.listaPlatos(idMenu);
+    public Response findPlato(@PathParam("idMenu") String idMenu, @Context Request request) {
+        return condicional(request, idMenu, "platos", () -> service.listaPlatos(idMenu)).build();
     }
     
      /*
@@ -253,7 +503,41 @@ public class MenuController {
     @GET
     @Path("/lisDia/{idMenu}")
     @Produces({MediaType.APPLICATION_JSON})
-    public List<String> findDia(@PathParam("idMenu") String idMenu) {
-        return service.listaDias(idMenu);
+    public Response findDia(@PathParam("idMenu") String idMenu, @Context Request request) {
+        return condicional(request, idMenu, "dias", () -> service.listaDias(idMenu)).build();
+    }
+    
+    /**
+     * Evalúa If-None-Match contra la versión actual del menu. Si el cliente ya
+     * tiene esa versión responde 304 sin consultar ni serializar los datos.
+     * La versión se lee antes que los datos: si el menu cambia entre las dos
+     * lecturas el cliente recibe datos nuevos con la etiqueta anterior y los
+     * vuelve a pedir en la siguiente consulta, nunca se queda con datos viejos.
+     *
+     * @param request petición, con los encabezados condicionales
+     * @param idMenu id del menu
+     * @param tipo representación, para que cada consulta tenga su propia etiqueta
+     * @param consulta arma el cuerpo de la respuesta si hace falta
+     * @return respuesta 304 o 200 con ETag y Cache-Control
+     */
+    private Response.ResponseBuilder condicional(Request request, String idMenu, String tipo, Supplier<Object> consulta) {
+        Long version = service.findVersion(idMenu);
+        if (version == null) {
+            return Response.ok(consulta.get());
+        }
+        EntityTag etag = new EntityTag(idMenu + "-" + version + "-" + tipo);
+        Response.ResponseBuilder builder = request.evaluatePreconditions(etag);
+        if (builder == null) {
+            builder = Response.ok(consulta.get());
+        }
+        return builder.tag(etag).cacheControl(REVALIDAR);
+    }
+
+    /**
+     * @return true si la consulta falló en la base de datos y no por los
+     * datos de la petición
+     */
+    private static boolean noDisponible(List<Error> errors) {
+        return errors.stream().anyMatch(error -> error.code == ValidationError.UNAVAILABLE);
     }
 }
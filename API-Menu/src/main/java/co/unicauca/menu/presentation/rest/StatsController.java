@@ -0,0 +1,53 @@
+package co.unicauca.menu.presentation.rest;
+
+import co.unicauca.menu.access.ConnectionPool;
+import co.unicauca.menu.access.PoolStats;
+import co.unicauca.menu.domain.service.DisponiblesCache;
+import co.unicauca.menu.infra.CacheStats;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Metricas de operacion del servicio, para dimensionar el pool de conexiones
+ * y el cache de menus disponibles en produccion.
+ *
+ * @author Michelle Vallejo
+ */
+@Stateless
+@Path("/stats")
+public class StatsController {
+
+    @Inject
+    private ConnectionPool pool;
+
+    @Inject
+    private DisponiblesCache disponibles;
+
+    /*
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Menu/menu-service/stats/pool
+
+     */
+    @GET
+    @Path("/pool")
+    @Produces({MediaType.APPLICATION_JSON})
+    public PoolStats pool() {
+        return pool.getStats();
+    }
+
+    /*
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Menu/menu-service/stats/cache
+
+     */
+    @GET
+    @Path("/cache")
+    @Produces({MediaType.APPLICATION_JSON})
+    public CacheStats cache() {
+        return disponibles.getStats();
+    }
+}
@@ -0,0 +1,24 @@
+-- Esquema inicial de menuBD. Usa IF NOT EXISTS para adoptar las bases de
+-- datos creadas antes de las migraciones.
+CREATE TABLE IF NOT EXISTS menu (
+    IDMENU varchar(60) PRIMARY KEY,
+    NAMEMENU varchar(60) NOT NULL,
+    IDREST varchar(60) not null
+);
+
+CREATE TABLE IF NOT EXISTS visualizacion (
+    IDMENU varchar(60) not null,
+    DIA varchar(60) not null,
+    primary key(IDMENU, DIA)
+);
+
+CREATE TABLE IF NOT EXISTS ofrece (
+    IDMENU varchar(60) not null,
+    ID varchar(60) not null,
+    primary key(IDMENU, ID)
+);
+
+-- Datos de inicialización
+INSERT INTO menu(IDMENU, NAMEMENU, IDREST)
+SELECT '100', 'Menu Oriental', '500'
+WHERE NOT EXISTS (SELECT 1 FROM menu WHERE IDMENU = '100');
@@ -0,0 +1,33 @@
+-- Version de cada menu, para los ETag de las consultas. Cambia con cualquier
+-- modificacion del menu, de sus dias de visualizacion o de sus platos.
+ALTER TABLE menu ADD COLUMN IF NOT EXISTS VERSION bigint NOT NULL DEFAULT 1;
+
+CREATE OR REPLACE FUNCTION menu_version_propia() RETURNS trigger AS $$
+BEGIN
+    NEW.VERSION := OLD.VERSION + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION menu_version_detalle() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        UPDATE menu SET VERSION = VERSION + 1 WHERE IDMENU = OLD.IDMENU;
+    ELSE
+        UPDATE menu SET VERSION = VERSION + 1 WHERE IDMENU = NEW.IDMENU;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS menu_version ON menu;
+CREATE TRIGGER menu_version BEFORE UPDATE ON menu
+    FOR EACH ROW EXECUTE PROCEDURE menu_version_propia();
+
+DROP TRIGGER IF EXISTS visualizacion_version ON visualizacion;
+CREATE TRIGGER visualizacion_version AFTER INSERT OR UPDATE OR DELETE ON visualizacion
+    FOR EACH ROW EXECUTE PROCEDURE menu_version_detalle();
+
+DROP TRIGGER IF EXISTS ofrece_version ON ofrece;
+CREATE TRIGGER ofrece_version AFTER INSERT OR UPDATE OR DELETE ON ofrece
+    FOR EACH ROW EXECUTE PROCEDURE menu_version_detalle();
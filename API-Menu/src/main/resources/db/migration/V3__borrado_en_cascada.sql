@@ -0,0 +1,11 @@
+-- Los dias y platos de un menu se borran con el menu. Antes se borraban uno
+-- por uno desde MenuService, fuera de una transaccion; las filas que quedaron
+-- huerfanas por borrados a medias se eliminan antes de crear las llaves.
+DELETE FROM visualizacion v WHERE NOT EXISTS (SELECT 1 FROM menu m WHERE m.IDMENU = v.IDMENU);
+DELETE FROM ofrece o WHERE NOT EXISTS (SELECT 1 FROM menu m WHERE m.IDMENU = o.IDMENU);
+
+ALTER TABLE visualizacion ADD CONSTRAINT visualizacion_menu_fk
+    FOREIGN KEY (IDMENU) REFERENCES menu (IDMENU) ON DELETE CASCADE;
+
+ALTER TABLE ofrece ADD CONSTRAINT ofrece_menu_fk
+    FOREIGN KEY (IDMENU) REFERENCES menu (IDMENU) ON DELETE CASCADE;
@@ -0,0 +1,5 @@
+-- Indices para buscar los menus de un restaurante y los menus que ofrecen un
+-- plato. La llave primaria de ofrece empieza por IDMENU y no sirve para
+-- buscar por plato.
+CREATE INDEX IF NOT EXISTS menu_idrest_idx ON menu (IDREST);
+CREATE INDEX IF NOT EXISTS ofrece_id_idx ON ofrece (ID);
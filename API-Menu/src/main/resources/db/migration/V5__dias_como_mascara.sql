@@ -0,0 +1,44 @@
+-- Los dias de visualizacion pasan de una fila por dia en visualizacion a una
+-- mascara de 7 bits en menu.DIAS: lunes = 1, martes = 2, miercoles = 4,
+-- jueves = 8, viernes = 16, sabado = 32, domingo = 64. Los valores de DIA que
+-- no son un dia de la semana se descartan.
+ALTER TABLE menu ADD COLUMN IF NOT EXISTS DIAS smallint NOT NULL DEFAULT 0;
+
+UPDATE menu m SET DIAS = d.MASCARA
+FROM (
+    SELECT IDMENU, bit_or(CASE translate(lower(trim(DIA)), 'áéíóú', 'aeiou')
+            WHEN 'lunes' THEN 1
+            WHEN 'martes' THEN 2
+            WHEN 'miercoles' THEN 4
+            WHEN 'jueves' THEN 8
+            WHEN 'viernes' THEN 16
+            WHEN 'sabado' THEN 32
+            WHEN 'domingo' THEN 64
+            ELSE 0 END)::smallint AS MASCARA
+    FROM visualizacion
+    GROUP BY IDMENU
+) d
+WHERE d.IDMENU = m.IDMENU;
+
+ALTER TABLE menu ADD CONSTRAINT menu_dias_ck CHECK (DIAS BETWEEN 0 AND 127);
+
+-- La tabla se reemplaza por una vista de solo lectura con las mismas
+-- columnas, para las consultas que todavia la usan
+DROP TABLE visualizacion;
+
+CREATE VIEW visualizacion AS
+SELECT m.IDMENU, d.DIA
+FROM menu m
+JOIN (VALUES (1, 'lunes'), (2, 'martes'), (4, 'miercoles'), (8, 'jueves'),
+             (16, 'viernes'), (32, 'sabado'), (64, 'domingo')) AS d (BIT, DIA)
+  ON (m.DIAS & d.BIT) <> 0;
+
+-- Un indice parcial por dia para "menus visibles el dia X". Las consultas
+-- deben usar el mismo predicado con el bit como literal.
+CREATE INDEX IF NOT EXISTS menu_lunes_idx ON menu (IDREST) WHERE (DIAS & 1) <> 0;
+CREATE INDEX IF NOT EXISTS menu_martes_idx ON menu (IDREST) WHERE (DIAS & 2) <> 0;
+CREATE INDEX IF NOT EXISTS menu_miercoles_idx ON menu (IDREST) WHERE (DIAS & 4) <> 0;
+CREATE INDEX IF NOT EXISTS menu_jueves_idx ON menu (IDREST) WHERE (DIAS & 8) <> 0;
+CREATE INDEX IF NOT EXISTS menu_viernes_idx ON menu (IDREST) WHERE (DIAS & 16) <> 0;
+CREATE INDEX IF NOT EXISTS menu_sabado_idx ON menu (IDREST) WHERE (DIAS & 32) <> 0;
+CREATE INDEX IF NOT EXISTS menu_domingo_idx ON menu (IDREST) WHERE (DIAS & 64) <> 0;
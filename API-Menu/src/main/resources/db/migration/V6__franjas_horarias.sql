@@ -0,0 +1,18 @@
+-- Franjas horarias en las que un menu esta activo, por ejemplo 07:00 a 10:30
+-- de lunes a viernes. DIAS usa la misma mascara que menu.DIAS. HORA_FIN puede
+-- ser 24:00 para indicar el fin del dia; las franjas no cruzan la medianoche.
+CREATE TABLE IF NOT EXISTS franja (
+    IDFRANJA bigserial PRIMARY KEY,
+    IDMENU varchar(60) NOT NULL REFERENCES menu (IDMENU) ON DELETE CASCADE,
+    DIAS smallint NOT NULL CHECK (DIAS BETWEEN 1 AND 127),
+    HORA_INICIO time NOT NULL,
+    HORA_FIN time NOT NULL,
+    CHECK (HORA_INICIO < HORA_FIN)
+);
+
+CREATE INDEX IF NOT EXISTS franja_idmenu_idx ON franja (IDMENU);
+
+-- Los cambios de franjas tambien cambian la version (ETag) del menu
+DROP TRIGGER IF EXISTS franja_version ON franja;
+CREATE TRIGGER franja_version AFTER INSERT OR UPDATE OR DELETE ON franja
+    FOR EACH ROW EXECUTE PROCEDURE menu_version_detalle();
@@ -0,0 +1,231 @@
+package co.unicauca.menu.access;
+
+import co.unicauca.menu.domain.entity.Dish;
+import co.unicauca.menu.domain.entity.DishBatch;
+import co.unicauca.menu.domain.entity.Menu;
+import co.unicauca.menu.domain.entity.MenuDetalle;
+import co.unicauca.menu.domain.service.MenuService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.ProcessingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de PlatoClient contra un API-Plato simulado con un servidor HTTP
+ * local que atiende POST /plato/batch
+ *
+ * @author Michelle Vallejo
+ */
+public class PlatoClientTest
+{
+    private static final String RUTA = "/API-Plato/plato-service";
+
+    private static final Pattern ID = Pattern.compile("\"([^\"]*)\"");
+
+    private HttpServer server;
+    private ExecutorService hilosServidor;
+    private ExecutorService executor;
+    private PlatoClient client;
+
+    /**
+     * Código de estado que responde el servidor simulado
+     */
+    private volatile int estado = 200;
+
+    /**
+     * Tiempo que tarda el servidor simulado en responder
+     */
+    private volatile long demoraMs = 0;
+
+    /**
+     * Peticiones recibidas por el servidor simulado, como "método tipo cuerpo"
+     */
+    private final List<String> peticiones = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void iniciar() throws IOException
+    {
+        hilosServidor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(RUTA + "/plato/batch", this::responder);
+        server.setExecutor(hilosServidor);
+        server.start();
+        executor = Executors.newCachedThreadPool();
+        client = new PlatoClient();
+        client.conectar("http://localhost:" + server.getAddress().getPort() + RUTA, executor);
+    }
+
+    @AfterEach
+    public void detener()
+    {
+        client.close();
+        executor.shutdownNow();
+        server.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    @Test
+    public void respuestaNormal() throws Exception
+    {
+        DishBatch batch = client.findByIds(Arrays.asList("p1", "p2", "p9")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Collections.singletonList("POST application/json [\"p1\",\"p2\",\"p9\"]"), peticiones);
+        assertEquals(Arrays.asList("p1", "p2"), batch.getAtrPlatos().stream().map(Dish::getAtrIdDish).collect(Collectors.toList()));
+        Dish dish = batch.getAtrPlatos().get(0);
+        assertEquals("Plato p1", dish.getAtrNameDish());
+        assertEquals("12000.50", dish.getAtrPriceDish());
+        assertEquals("CARNE", dish.getAtrCategoriaDish());
+        assertEquals("PRINCIPIO", dish.getAtrTypeDish());
+        assertEquals("Con arroz", dish.getAtrDescriptionDish());
+        assertEquals(Collections.singletonList("p9"), batch.getAtrFaltantes());
+    }
+
+    @Test
+    public void detalleConLotesConcurrentes()
+    {
+        MenuDetalle detalle = servicio(250).findDetalle("m1");
+
+        // 250 platos son tres lotes de máximo 100
+        assertEquals(3, peticiones.size());
+        assertFalse(detalle.isAtrParcial());
+        assertEquals(225, detalle.getAtrPlatos().size());
+        assertEquals(25, detalle.getAtrPlatosFaltantes().size());
+        assertTrue(detalle.getAtrPlatosPendientes().isEmpty());
+    }
+
+    @Test
+    public void respuestaLentaVenceElTiempoDeLectura()
+    {
+        demoraMs = 5000;
+
+        long inicio = System.nanoTime();
+        Future<DishBatch> respuesta = client.findByIds(Arrays.asList("p1"));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> respuesta.get(10, TimeUnit.SECONDS));
+        long esperaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertTrue(ex.getCause() instanceof ProcessingException, ex.getCause().toString());
+        // El tiempo de lectura es de 2 segundos
+        assertTrue(esperaMs >= 1900 && esperaMs < 4000, "espero " + esperaMs + " ms");
+    }
+
+    @Test
+    public void respuestaLentaDejaElDetalleParcial()
+    {
+        demoraMs = 3000;
+
+        long inicio = System.nanoTime();
+        MenuDetalle detalle = servicio(150).findDetalle("m1");
+        long esperaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertTrue(esperaMs >= 800 && esperaMs < 2000, "espero " + esperaMs + " ms");
+        assertTrue(detalle.isAtrParcial());
+        assertTrue(detalle.getAtrPlatos().isEmpty());
+        assertEquals(150, detalle.getAtrPlatosPendientes().size());
+    }
+
+    @Test
+    public void errorDelServidor()
+    {
+        estado = 500;
+
+        Future<DishBatch> respuesta = client.findByIds(Arrays.asList("p1"));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> respuesta.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof InternalServerErrorException, ex.getCause().toString());
+
+        MenuDetalle detalle = servicio(150).findDetalle("m1");
+        assertTrue(detalle.isAtrParcial());
+        assertTrue(detalle.getAtrPlatos().isEmpty());
+        assertEquals(150, detalle.getAtrPlatosPendientes().size());
+    }
+
+    /**
+     * Servicio con este cliente y un repositorio que solo conoce el menu m1,
+     * con los platos p0 a p(numPlatos - 1)
+     */
+    private MenuService servicio(int numPlatos)
+    {
+        MenuService service = new MenuService();
+        service.setMenuRepository(new MenuRepository() {
+            @Override
+            public Menu findByMenuIdCompleto(String prmIdMenu) {
+                Menu menu = new Menu("m1", "Almuerzo", "r1");
+                for (int i = 0; i < numPlatos; i++) {
+                    menu.setAtrIdPlatos("p" + i);
+                }
+                return menu;
+            }
+        });
+        service.setPlatoClient(client);
+        return service;
+    }
+
+    /**
+     * Responde como API-Plato: los ids que terminan en 9 no existen
+     */
+    private void responder(HttpExchange exchange) throws IOException
+    {
+        String cuerpo = leer(exchange.getRequestBody()).replace(" ", "");
+        peticiones.add(exchange.getRequestMethod() + " " + exchange.getRequestHeaders().getFirst("Content-Type") + " " + cuerpo);
+        try {
+            Thread.sleep(demoraMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        List<String> platos = new ArrayList<>();
+        List<String> faltantes = new ArrayList<>();
+        Matcher ids = ID.matcher(cuerpo);
+        while (ids.find()) {
+            String id = ids.group(1);
+            if (id.endsWith("9")) {
+                faltantes.add("\"" + id + "\"");
+            } else {
+                platos.add("{\"atrCategoriaDish\":\"CARNE\",\"atrDescriptionDish\":\"Con arroz\",\"atrIdDish\":\"" + id
+                        + "\",\"atrNameDish\":\"Plato " + id + "\",\"atrPriceDish\":\"12000.50\",\"atrTypeDish\":\"PRINCIPIO\",\"atrVersion\":3}");
+            }
+        }
+        byte[] respuesta = (estado == 200
+                ? "{\"atrFaltantes\":[" + String.join(",", faltantes) + "],\"atrPlatos\":[" + String.join(",", platos) + "]}"
+                : "{\"success\":false}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(estado, respuesta.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(respuesta);
+        }
+    }
+
+    private static String leer(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            bytes.write(buffer, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+package co.unicauca.menu.domain.service;
+
+import co.unicauca.menu.access.IPlatoClient;
+import co.unicauca.menu.access.MenuRepository;
+import co.unicauca.menu.domain.entity.Dish;
+import co.unicauca.menu.domain.entity.DishBatch;
+import co.unicauca.menu.domain.entity.Menu;
+import co.unicauca.menu.domain.entity.MenuDetalle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del detalle de un menu resuelto contra un API-Plato simulado
+ *
+ * @author Michelle Vallejo
+ */
+public class MenuServiceTest
+{
+    /**
+     * Menu de prueba con 150 platos, se piden en dos lotes: p0..p99 y
+     * p100..p149
+     */
+    private static final int NUM_PLATOS = 150;
+
+    @Test
+    public void detalleCompleto()
+    {
+        MenuService service = servicio(lote -> CompletableFuture.completedFuture(encontrados(lote)));
+
+        MenuDetalle detalle = service.findDetalle("m1");
+
+        assertEquals("m1", detalle.getAtrIdMenu());
+        assertEquals(idsPlatos(), detalle.getAtrPlatos().stream().map(Dish::getAtrIdDish).collect(Collectors.toList()));
+        assertTrue(detalle.getAtrPlatosFaltantes().isEmpty());
+        assertTrue(detalle.getAtrPlatosPendientes().isEmpty());
+        assertFalse(detalle.isAtrParcial());
+    }
+
+    @Test
+    public void menuInexistente()
+    {
+        MenuService service = servicio(lote -> CompletableFuture.completedFuture(encontrados(lote)));
+
+        assertNull(service.findDetalle("no-existe"));
+    }
+
+    @Test
+    public void loteLentoQuedaPendiente()
+    {
+        List<CompletableFuture<DishBatch>> lentos = new ArrayList<>();
+        MenuService service = servicio(lote -> {
+            if (lote.get(0).equals("p0")) {
+                return CompletableFuture.completedFuture(encontrados(lote));
+            }
+            // Nunca responde, solo se puede cancelar
+            CompletableFuture<DishBatch> lento = new CompletableFuture<>();
+            lentos.add(lento);
+            return lento;
+        });
+
+        long inicio = System.nanoTime();
+        MenuDetalle detalle = service.findDetalle("m1");
+        long esperaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        assertTrue(esperaMs >= 800, "espero " + esperaMs + " ms");
+        assertTrue(esperaMs < 3000, "espero " + esperaMs + " ms");
+        assertTrue(detalle.isAtrParcial());
+        assertEquals(idsPlatos().subList(0, 100), detalle.getAtrPlatos().stream().map(Dish::getAtrIdDish).collect(Collectors.toList()));
+        assertEquals(idsPlatos().subList(100, NUM_PLATOS), detalle.getAtrPlatosPendientes());
+        assertTrue(detalle.getAtrPlatosFaltantes().isEmpty());
+        assertEquals(1, lentos.size());
+        assertTrue(lentos.get(0).isCancelled());
+    }
+
+    @Test
+    public void platosFaltantes()
+    {
+        MenuService service = servicio(lote -> {
+            DishBatch batch = new DishBatch();
+            for (String id : lote) {
+                // API-Plato no conoce los ids que terminan en 7
+                if (id.endsWith("7")) {
+                    batch.getAtrFaltantes().add(id);
+                } else {
+                    batch.getAtrPlatos().add(plato(id));
+                }
+            }
+            return CompletableFuture.completedFuture(batch);
+        });
+
+        MenuDetalle detalle = service.findDetalle("m1");
+
+        List<String> faltantes = idsPlatos().stream().filter(id -> id.endsWith("7")).collect(Collectors.toList());
+        assertEquals(faltantes, detalle.getAtrPlatosFaltantes());
+        assertEquals(NUM_PLATOS - faltantes.size(), detalle.getAtrPlatos().size());
+        assertTrue(detalle.getAtrPlatosPendientes().isEmpty());
+        assertFalse(detalle.isAtrParcial());
+    }
+
+    @Test
+    public void loteFallidoQuedaPendiente()
+    {
+        MenuService service = servicio(lote -> {
+            if (lote.get(0).equals("p0")) {
+                CompletableFuture<DishBatch> fallido = new CompletableFuture<>();
+                fallido.completeExceptionally(new IllegalStateException("API-Plato respondio 500"));
+                return fallido;
+            }
+            return CompletableFuture.completedFuture(encontrados(lote));
+        });
+
+        MenuDetalle detalle = service.findDetalle("m1");
+
+        assertTrue(detalle.isAtrParcial());
+        assertEquals(idsPlatos().subList(0, 100), detalle.getAtrPlatosPendientes());
+        assertEquals(idsPlatos().subList(100, NUM_PLATOS), detalle.getAtrPlatos().stream().map(Dish::getAtrIdDish).collect(Collectors.toList()));
+        assertTrue(detalle.getAtrPlatosFaltantes().isEmpty());
+    }
+
+    /**
+     * Servicio con un repositorio que solo conoce el menu m1 y el cliente de
+     * API-Plato dado
+     */
+    private static MenuService servicio(Function<List<String>, Future<DishBatch>> api)
+    {
+        MenuService service = new MenuService();
+        service.setMenuRepository(new MenuRepository() {
+            @Override
+            public Menu findByMenuIdCompleto(String prmIdMenu) {
+                if (!prmIdMenu.equals("m1")) {
+                    return null;
+                }
+                Menu menu = new Menu("m1", "Almuerzo", "r1");
+                idsPlatos().forEach(menu::setAtrIdPlatos);
+                return menu;
+            }
+        });
+        IPlatoClient client = lote -> {
+            assertTrue(lote.size() <= IPlatoClient.MAX_LOTE);
+            return api.apply(new ArrayList<>(lote));
+        };
+        service.setPlatoClient(client);
+        return service;
+    }
+
+    private static List<String> idsPlatos()
+    {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < NUM_PLATOS; i++) {
+            ids.add("p" + i);
+        }
+        return ids;
+    }
+
+    private static DishBatch encontrados(List<String> lote)
+    {
+        return new DishBatch(lote.stream().map(MenuServiceTest::plato).collect(Collectors.toList()), new ArrayList<>());
+    }
+
+    private static Dish plato(String id)
+    {
+        return new Dish(id, "Plato " + id, "1000", "", "PRINCIPIO", "CARNE");
+    }
+}
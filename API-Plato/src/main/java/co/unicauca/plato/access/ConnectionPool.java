@@ -0,0 +1,78 @@
+package co.unicauca.plato.access;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.sql.DataSource;
+
+/**
+ * Acceso al pool de conexiones administrado por Payara. El pool se declara en
+ * el web.xml (java:app/jdbc/platoBD), alli se configura su tamaño, el tiempo
+ * maximo de espera por una conexion y la deteccion de conexiones no devueltas.
+ * Esta clase entrega las conexiones del pool y lleva las metricas de
+ * adquisicion.
+ *
+ * @author MANNUEL
+ */
+@ApplicationScoped
+public class ConnectionPool {
+
+    /**
+     * Tiempo de espera a partir del cual se registra una advertencia
+     */
+    private static final long ESPERA_LENTA_MS = 500;
+
+    @Resource(lookup = "java:app/jdbc/platoBD")
+    private DataSource dataSource;
+
+    private final AtomicLong adquiridas = new AtomicLong();
+    private final AtomicLong fallidas = new AtomicLong();
+    private final AtomicLong esperaTotalNanos = new AtomicLong();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+
+    /**
+     * Toma una conexion del pool. Se debe cerrar con try-with-resources para
+     * devolverla al pool.
+     *
+     * @return conexion a la base de datos
+     * @throws SQLException si no se obtiene una conexion dentro del tiempo de
+     * espera configurado
+     */
+    public Connection getConnection() throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            Connection conn = dataSource.getConnection();
+            adquiridas.incrementAndGet();
+            return conn;
+        } catch (SQLException ex) {
+            fallidas.incrementAndGet();
+            Logger.getLogger(ConnectionPool.class.getName()).log(Level.SEVERE,
+                    "No se obtuvo conexion del pool (fallidas: " + fallidas.get() + ")", ex);
+            throw ex;
+        } finally {
+            long espera = System.nanoTime() - inicio;
+            esperaTotalNanos.addAndGet(espera);
+            esperaMaximaNanos.accumulateAndGet(espera, Math::max);
+            if (TimeUnit.NANOSECONDS.toMillis(espera) > ESPERA_LENTA_MS) {
+                Logger.getLogger(ConnectionPool.class.getName()).log(Level.WARNING,
+                        "Espera de {0} ms por una conexion del pool", TimeUnit.NANOSECONDS.toMillis(espera));
+            }
+        }
+    }
+
+    /**
+     * @return metricas de adquisicion de conexiones
+     */
+    public PoolStats getStats() {
+        long total = adquiridas.get() + fallidas.get();
+        long promedio = total == 0 ? 0 : esperaTotalNanos.get() / total;
+        return new PoolStats(adquiridas.get(), fallidas.get(),
+                TimeUnit.NANOSECONDS.toMicros(promedio),
+                TimeUnit.NANOSECONDS.toMicros(esperaMaximaNanos.get()));
+    }
+}
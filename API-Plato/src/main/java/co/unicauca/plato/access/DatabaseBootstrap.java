@@ -0,0 +1,167 @@
+package co.unicauca.plato.access;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+/**
+ * Aplica las migraciones del esquema de platoBD una sola vez, al desplegar la
+ * aplicación. Los scripts están en src/main/resources/db/migration, se
+ * ejecutan en el orden de migrations.lst y cada uno queda registrado en la
+ * tabla schema_version. Un advisory lock de postgres garantiza que solo una de
+ * las instancias de Payara migra; las demás esperan a que termine.
+ *
+ * @author MANNUEL
+ */
+@Singleton
+@Startup
+public class DatabaseBootstrap {
+
+    private static final String CARPETA = "db/migration/";
+
+    /**
+     * Llave del advisory lock que protege las migraciones
+     */
+    private static final long LOCK_MIGRACIONES = 7_366_271_001L;
+
+    @Inject
+    private ConnectionPool pool;
+
+    /**
+     * Aplica las migraciones pendientes. Si alguna falla lanza una excepción
+     * para que el despliegue falle.
+     */
+    @PostConstruct
+    public void initDatabase() {
+        long inicio = System.nanoTime();
+        try (Connection conn = pool.getConnection()) {
+            advisoryLock(conn, "SELECT pg_advisory_lock(?)");
+            try {
+                migrar(conn);
+            } finally {
+                advisoryLock(conn, "SELECT pg_advisory_unlock(?)");
+            }
+        } catch (SQLException | IOException ex) {
+            // Se detiene el despliegue: sin el esquema completo no deben
+            // arrancar los servicios ni los indices que dependen de él
+            Logger.getLogger(DatabaseBootstrap.class.getName()).log(Level.SEVERE, "Error al migrar la base de datos", ex);
+            throw new IllegalStateException("Error al migrar la base de datos", ex);
+        }
+        Logger.getLogger(DatabaseBootstrap.class.getName()).log(Level.INFO,
+                "Migracion de platoBD en {0} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Ejecuta, cada uno en su propia transacción, los scripts que aún no
+     * están en schema_version. Si un script falla se detiene la migración.
+     */
+    private void migrar(Connection conn) throws SQLException, IOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "VERSION integer PRIMARY KEY,"
+                    + "DESCRIPCION varchar(200) not null,"
+                    + "SCRIPT varchar(200) not null,"
+                    + "INSTALADO timestamp not null default now(),"
+                    + "DURACION_MS bigint not null"
+                    + ")");
+        }
+        Set<Integer> aplicadas = versionesAplicadas(conn);
+        for (String script : leerLineas(CARPETA + "migrations.lst")) {
+            int version = version(script);
+            if (aplicadas.contains(version)) {
+                continue;
+            }
+            long inicio = System.nanoTime();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                    PreparedStatement pstmt = conn.prepareStatement(
+                            "INSERT INTO schema_version (VERSION, DESCRIPCION, SCRIPT, DURACION_MS) VALUES (?, ?, ?, ?)")) {
+                stmt.execute(leer(CARPETA + script));
+                long duracion = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+                pstmt.setInt(1, version);
+                pstmt.setString(2, descripcion(script));
+                pstmt.setString(3, script);
+                pstmt.setLong(4, duracion);
+                pstmt.executeUpdate();
+                conn.commit();
+                Logger.getLogger(DatabaseBootstrap.class.getName()).log(Level.INFO,
+                        "Migracion {0} aplicada en {1} ms", new Object[]{script, duracion});
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private Set<Integer> versionesAplicadas(Connection conn) throws SQLException {
+        Set<Integer> versiones = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT VERSION FROM schema_version")) {
+            while (rs.next()) {
+                versiones.add(rs.getInt(1));
+            }
+        }
+        return versiones;
+    }
+
+    private void advisoryLock(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, LOCK_MIGRACIONES);
+            pstmt.execute();
+        }
+    }
+
+    /**
+     * @param script nombre del script, por ejemplo V1__esquema_inicial.sql
+     * @return número de versión del script
+     */
+    private int version(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private String descripcion(String script) {
+        return script.substring(script.indexOf("__") + 2, script.lastIndexOf('.')).replace('_', ' ');
+    }
+
+    private List<String> leerLineas(String recurso) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        for (String linea : leer(recurso).split("\n")) {
+            if (!linea.trim().isEmpty() && !linea.trim().startsWith("#")) {
+                lineas.add(linea.trim());
+            }
+        }
+        return lineas;
+    }
+
+    private String leer(String recurso) throws IOException {
+        try (InputStream in = DatabaseBootstrap.class.getClassLoader().getResourceAsStream(recurso)) {
+            if (in == null) {
+                throw new IOException("No se encontro el recurso " + recurso);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                return reader.lines().collect(Collectors.joining("\n"));
+            }
+        }
+    }
+}
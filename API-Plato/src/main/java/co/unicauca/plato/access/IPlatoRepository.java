@@ -2,7 +2,11 @@
 package co.unicauca.plato.access;
 
 import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishFacets;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *
@@ -14,13 +18,33 @@ import java.util.List;
 public interface IPlatoRepository 
 {
     List<Dish> findAll();
+    
+    boolean forEach(Consumer<Dish> action);
+
+    List<Dish> findPorPrecio(BigDecimal min, BigDecimal max, String categoria, boolean descendente,
+            BigDecimal afterPrecio, String afterId, int limit);
+
+    DishFacets contarFacetas();
 
     Dish findByIdDish(String prmIdDish);
+    
+    List<Dish> findByIds(Collection<String> prmIdsDish);
+    
+    List<String> findExistingIds(Collection<String> prmIdsDish);
 
-    boolean create(Dish prmNewDish);
+    ResultadoCreacion create(Dish prmNewDish);
+    
+    boolean createAll(List<Dish> prmNewDishes);
 
-    boolean update(Dish prmNewDish);
+    Dish update(Dish prmNewDish, Long prmVersion);
 
-    boolean delete(String prmIdDish);
+    /**
+     * Elimina un plato
+     *
+     * @param prmIdDish id del plato
+     * @return plato eliminado, solo con su id, categoría y tipo, o null si
+     * no existía o falló la consulta
+     */
+    Dish delete(String prmIdDish);
     
 }
@@ -1,57 +1,58 @@
 package co.unicauca.plato.access;
 
 import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishFacets;
+import java.math.BigDecimal;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Default;
+import javax.inject.Inject;
 /**
  * Es una implementación que tiene libertad de hacer una implementación del
  * contrato. Se utiliza postgres, importante: para que funcione la aplicación, 
  * se debe copiar manualmente la librería de maven de netbeans postgresql-42.2.8.jar, 
- * y pegarla en el directorio donde se haya instalado Payara
+ * y pegarla en el directorio donde se haya instalado Payara. Las conexiones se
+ * toman del pool declarado en el web.xml. Es una unica instancia para toda la
+ * aplicacion, el esquema lo crea DatabaseBootstrap al desplegar
  * 
  * @author MANNUEL
  */
 @Default
+@ApplicationScoped
 public class PlatoRepository implements IPlatoRepository
 {
-    private Connection conn;
+    /**
+     * Pool de conexiones a platoBD
+     */
+    @Inject
+    private ConnectionPool pool;
     
-    public PlatoRepository()
-    {
-        initDatabase();
-    }
+    /**
+     * Filas que se traen por viaje a la base de datos al recorrer platos
+     */
+    private static final int FETCH_SIZE = 200;
 
     @Override
     public List<Dish> findAll()
     {
       List<Dish> dishs = new ArrayList<>();
-      try{
-          String sql = "SELECT * FROM plato";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+      String sql = "SELECT * FROM plato";
+      try (Connection conn = pool.getConnection();
+              Statement stmt = conn.createStatement();
+              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                Dish newDish = new Dish();
-                newDish.setAtrIdDish(rs.getString("ID"));
-                newDish.setAtrNameDish(rs.getString("NAME"));
-                newDish.setAtrPriceDish(rs.getString("PRECIO"));
-                newDish.setAtrCategoriaDish(rs.getString("CATEGORIA"));
-                newDish.setAtrDescriptionDish(rs.getString("DESCRIPCION"));
-                newDish.setAtrTypeDish(rs.getString("TIPOPLATO"));
-                
-                dishs.add(newDish);
-            }
-            this.disconnect();
+                dishs.add(toDish(rs));
+            }
         } catch (SQLException ex) {
             Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE,null,ex);
         }
@@ -59,168 +60,363 @@ public class PlatoRepository implements IPlatoRepository
       
     }
 
+    /**
+     * Recorre todos los platos a medida que llegan de la base de datos, sin
+     * cargarlos en memoria. Postgres solo usa un cursor (fetch size) dentro
+     * de una transacción, por eso se apaga el auto-commit mientras dura el
+     * recorrido.
+     *
+     * @param action acción a ejecutar con cada plato
+     * @return true si recorrió todos los platos, false si falló la consulta
+     */
     @Override
-    public Dish findByIdDish(String prmIdDish) {
-       
-        Dish dish = null;
-        try {
+    public boolean forEach(Consumer<Dish> action) {
+        String sql = "SELECT * FROM plato ORDER BY ID";
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        action.accept(toDish(rs));
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al recorrer los platos", ex);
+        }
+        return false;
+    }
 
-            String sql = "SELECT * FROM plato Where ID='" + prmIdDish+"'";
-            this.connect();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+    /**
+     * Busca una página de platos ordenados por precio, paginando por cursor
+     * (keyset): la página siguiente empieza después del precio y el id de la
+     * última fila, así el costo no crece con el número de página. Usa los
+     * indices (PRECIO, ID) y (CATEGORIA, PRECIO, ID).
+     *
+     * @param min precio mínimo, o null
+     * @param max precio máximo, o null
+     * @param categoria categoría exacta, o null para todas
+     * @param descendente true para ordenar del más caro al más barato
+     * @param afterPrecio precio de la última fila de la página anterior, o
+     * null para la primera página
+     * @param afterId id de la última fila de la página anterior
+     * @param limit máximo de platos
+     * @return platos de la página
+     */
+    @Override
+    public List<Dish> findPorPrecio(BigDecimal min, BigDecimal max, String categoria, boolean descendente,
+            BigDecimal afterPrecio, String afterId, int limit) {
+        List<Dish> dishs = new ArrayList<>();
+        List<String> condiciones = new ArrayList<>();
+        if (categoria != null) {
+            condiciones.add("CATEGORIA = ?");
+        }
+        if (min != null) {
+            condiciones.add("PRECIO >= ?");
+        }
+        if (max != null) {
+            condiciones.add("PRECIO <= ?");
+        }
+        if (afterPrecio != null) {
+            condiciones.add("(PRECIO, ID) " + (descendente ? "<" : ">") + " (?, ?)");
+        }
+        String direccion = descendente ? " DESC" : "";
+        String sql = "SELECT * FROM plato "
+                + (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ")
+                + "ORDER BY PRECIO" + direccion + ", ID" + direccion + " LIMIT ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (categoria != null) {
+                pstmt.setString(i++, categoria);
+            }
+            if (min != null) {
+                pstmt.setBigDecimal(i++, min);
+            }
+            if (max != null) {
+                pstmt.setBigDecimal(i++, max);
+            }
+            if (afterPrecio != null) {
+                pstmt.setBigDecimal(i++, afterPrecio);
+                pstmt.setString(i++, afterId);
+            }
+            pstmt.setInt(i, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dishs.add(toDish(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al buscar los platos por precio", ex);
+        }
+        return dishs;
+    }
 
-            if (rs.next()) {
-                dish = new Dish();
-                dish.setAtrIdDish(rs.getString("ID"));
-                dish.setAtrNameDish(rs.getString("NAME"));
-                dish.setAtrPriceDish(rs.getString("PRECIO"));
-                dish.setAtrCategoriaDish(rs.getString("CATEGORIA"));
-                dish.setAtrDescriptionDish(rs.getString("DESCRIPCION"));
-                dish.setAtrTypeDish(rs.getString("TIPOPLATO"));
+    /**
+     * Cuenta los platos por categoría, por tipo y en total con una sola
+     * consulta agrupada (GROUPING SETS), que recorre la tabla una vez
+     *
+     * @return contadores, o null si falló la consulta
+     */
+    @Override
+    public DishFacets contarFacetas() {
+        String sql = "SELECT CATEGORIA, TIPOPLATO, GROUPING(CATEGORIA) AS SIN_CATEGORIA, "
+                + "GROUPING(TIPOPLATO) AS SIN_TIPO, COUNT(*) AS CANTIDAD "
+                + "FROM plato GROUP BY GROUPING SETS ((CATEGORIA), (TIPOPLATO), ())";
+        DishFacets facetas = new DishFacets();
+        try (Connection conn = pool.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                int cantidad = rs.getInt("CANTIDAD");
+                if (rs.getInt("SIN_CATEGORIA") == 0) {
+                    facetas.getAtrCategorias().put(rs.getString("CATEGORIA"), cantidad);
+                } else if (rs.getInt("SIN_TIPO") == 0) {
+                    facetas.getAtrTipos().put(rs.getString("TIPOPLATO"), cantidad);
+                } else {
+                    facetas.setAtrTotal(cantidad);
+                }
             }
-            this.disconnect();
+            return facetas;
+        } catch (SQLException ex) {
+            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al contar los platos", ex);
+        }
+        return null;
+    }
 
+    @Override
+    public Dish findByIdDish(String prmIdDish) {
+       
+        Dish dish = null;
+        String sql = "SELECT * FROM plato Where ID = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, prmIdDish);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    dish = toDish(rs);
+                }
+            }
         } catch (SQLException ex) {
             Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE,"Error al buscar el producto en la base de datos",ex);
             }
         return dish;
     }
 
+    /**
+     * Busca varios platos con una sola consulta
+     *
+     * @param prmIdsDish ids de los platos
+     * @return platos encontrados, en cualquier orden
+     */
+    @Override
+    public List<Dish> findByIds(Collection<String> prmIdsDish) {
+        List<Dish> dishs = new ArrayList<>();
+        String sql = "SELECT * FROM plato WHERE ID = ANY(?)";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", prmIdsDish.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dishs.add(toDish(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al buscar los platos en la base de datos", ex);
+        }
+        return dishs;
+    }
+
+    /**
+     * De los ids dados, devuelve los que ya existen, con una sola consulta
+     *
+     * @param prmIdsDish ids a verificar
+     * @return ids que ya están en la base de datos
+     */
     @Override
-    public boolean create(Dish prmNewDish) {
-                String sql="";
-        try {
-            this.connect();
+    public List<String> findExistingIds(Collection<String> prmIdsDish) {
+        List<String> ids = new ArrayList<>();
+        String sql = "SELECT ID FROM plato WHERE ID = ANY(?)";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", prmIdsDish.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al buscar los platos en la base de datos", ex);
+        }
+        return ids;
+    }
 
-            sql = "INSERT INTO plato ( ID,NAME,PRECIO,CATEGORIA,DESCRIPCION,TIPOPLATO) "
-                    + "VALUES ( ?, ?, ?, ?, ?, ? )";
+    /**
+     * Inserta todos los platos en una sola transacción usando un batch de
+     * JDBC; con reWriteBatchedInserts el driver los envía como inserts de
+     * varias filas. Si alguno falla no se inserta ninguno.
+     *
+     * @param prmNewDishes platos a insertar
+     * @return true si se insertaron todos, false si no se insertó ninguno
+     */
+    @Override
+    public boolean createAll(List<Dish> prmNewDishes) {
+        String sql = "INSERT INTO plato ( ID,NAME,PRECIO,CATEGORIA,DESCRIPCION,TIPOPLATO) "
+                + "VALUES ( ?, ?, ?, ?, ?, ? )";
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Dish dish : prmNewDishes) {
+                    pstmt.setString(1, dish.getAtrIdDish());
+                    pstmt.setString(2, dish.getAtrNameDish());
+                    pstmt.setBigDecimal(3, new BigDecimal(dish.getAtrPriceDish()));
+                    pstmt.setString(4, dish.getAtrCategoriaDish());
+                    pstmt.setString(5, dish.getAtrDescriptionDish());
+                    pstmt.setString(6, dish.getAtrTypeDish());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+                // Version inicial, la que pone la base de datos por defecto
+                prmNewDishes.forEach(dish -> dish.setAtrVersion(1));
+                return true;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al importar los platos", ex);
+        }
+        return false;
+    }
 
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+    /**
+     * Inserta un plato en una sola consulta. Si el id ya existe no inserta
+     * nada y no devuelve fila, así la verificación de duplicados y el insert
+     * son atómicos.
+     *
+     * @param prmNewDish plato a insertar
+     * @return CREADO, DUPLICADO si el id ya existe, o ERROR si falló la
+     * consulta
+     */
+    @Override
+    public ResultadoCreacion create(Dish prmNewDish) {
+        String sql = "INSERT INTO plato ( ID,NAME,PRECIO,CATEGORIA,DESCRIPCION,TIPOPLATO) "
+                + "VALUES ( ?, ?, ?, ?, ?, ? ) "
+                + "ON CONFLICT (ID) DO NOTHING RETURNING VERSION";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, prmNewDish.getAtrIdDish());
             pstmt.setString(2, prmNewDish.getAtrNameDish());
-            pstmt.setString(3, prmNewDish.getAtrPriceDish());
+            pstmt.setBigDecimal(3, new BigDecimal(prmNewDish.getAtrPriceDish()));
             pstmt.setString(4, prmNewDish.getAtrCategoriaDish());
             pstmt.setString(5, prmNewDish.getAtrDescriptionDish());
             pstmt.setString(6, prmNewDish.getAtrTypeDish());
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return ResultadoCreacion.DUPLICADO;
+                }
+                prmNewDish.setAtrVersion(rs.getLong("VERSION"));
+                return ResultadoCreacion.CREADO;
+            }
         } catch (SQLException ex) {
             Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE,"Error en el insert into: " + sql, ex);
             
         }
-        return false;
+        return ResultadoCreacion.ERROR;
     }
 
 
+    /**
+     * Edita un plato en una sola consulta e incrementa su versión. Si se da
+     * una versión, solo se edita si el plato sigue en esa versión, así dos
+     * ediciones concurrentes no se pisan.
+     *
+     * @param prmNewDish plato con los datos nuevos
+     * @param prmVersion versión que se espera que tenga el plato, o null para
+     * editarlo en cualquier versión
+     * @return el plato editado, con su versión nueva, o null si no existe,
+     * cambió de versión o falló la consulta
+     */
     @Override
-    public boolean update(Dish prmNewDish){
+    public Dish update(Dish prmNewDish, Long prmVersion){
         
-         try {
-            this.connect();
-
-            String sql = "UPDATE plato "
-                    + "SET NAME = ? ,"
-                    + "PRECIO = ? ,"
-                    + "CATEGORIA = ? ,"
-                    + "DESCRIPCION = ? ,"
-                    + "TIPOPLATO = ? "
-                    + "WHERE ID = ?";
-
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            
+        String sql = "UPDATE plato "
+                + "SET NAME = ? ,"
+                + "PRECIO = ? ,"
+                + "CATEGORIA = ? ,"
+                + "DESCRIPCION = ? ,"
+                + "TIPOPLATO = ? ,"
+                + "VERSION = VERSION + 1 "
+                + "WHERE ID = ?"
+                + (prmVersion == null ? "" : " AND VERSION = ?")
+                + " RETURNING *";
+         try (Connection conn = pool.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, prmNewDish.getAtrNameDish());
-            pstmt.setString(2, prmNewDish.getAtrPriceDish());
+            pstmt.setBigDecimal(2, new BigDecimal(prmNewDish.getAtrPriceDish()));
             pstmt.setString(3, prmNewDish.getAtrCategoriaDish());
             pstmt.setString(4, prmNewDish.getAtrDescriptionDish());
             pstmt.setString(5, prmNewDish.getAtrTypeDish());
             pstmt.setString(6, prmNewDish.getAtrIdDish());
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
+            if (prmVersion != null) {
+                pstmt.setLong(7, prmVersion);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? toDish(rs) : null;
+            }
         } catch (SQLException ex) 
         {
             
             Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al actualizar el producto", ex);
         }
-        return false;
+        return null;
     
     }
 
     @Override
-    public boolean delete(String prmIdDish) {
-         try {
-
-            String sql = "DELETE FROM plato "
-                    + "WHERE ID = ?";
-            this.connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+    public Dish delete(String prmIdDish) {
+        String sql = "DELETE FROM plato "
+                + "WHERE ID = ? RETURNING ID, CATEGORIA, TIPOPLATO";
+         try (Connection conn = pool.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, prmIdDish);
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Dish dish = new Dish();
+                dish.setAtrIdDish(rs.getString("ID"));
+                dish.setAtrCategoriaDish(rs.getString("CATEGORIA"));
+                dish.setAtrTypeDish(rs.getString("TIPOPLATO"));
+                return dish;
+            }
         } catch (SQLException ex) {
             Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al eliminar producto", ex);
         }
-        return false;
+        return null;
     }
     
-        
- private void initDatabase()
-{
-        //SQL statement for creating a new table
-        String sql = "CREATE TABLE IF NOT EXISTS plato ("
-                        + "ID        varchar(60) PRIMARY KEY,"
-                        + "NAME      varchar(60) not null," 
-                        + "PRECIO  varchar(60) not null," 
-                        + "CATEGORIA  varchar(60) not null," 
-                        + "DESCRIPCION      varchar(60) not null," 
-                        + "TIPOPLATO   varchar(60) not null"  
-                        + "); ";
-        
-        try {
-            this.connect();
-            Statement stmt = conn.createStatement();
-            stmt.execute(sql);// Datos de inicialización
-            if(this.findByIdDish("123")==null){
-            stmt.execute("INSERT INTO plato(ID, NAME,PRECIO,CATEGORIA,DESCRIPCION,TIPOPLATO) "
-                    + "values('123','Pizza','20000','Platos fuertes','Tres carnes','Especial');");
-            }
-            this.disconnect();
-        } catch (SQLException ex){
-            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        
-    }
-
     /**
-     * Conectar a la bd
+     * Construye un plato a partir de la fila actual del resultado
      */
-    public void connect(){
-        try {
-            
-            String url = "jdbc:postgresql://localhost:5432/platoBD";
-            String usuario = "postgres";
-            String contrasenia = "system";
-            Class.forName("org.postgresql.Driver");
-            conn = DriverManager.getConnection(url, usuario, contrasenia);
-           
-        } catch (SQLException | ClassNotFoundException ex) {
-           
-            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-    
-     public void disconnect() {
-        try {
-            if (conn != null) {
-                conn.close();
-            }
-        } catch (SQLException ex) {
-            Logger.getLogger(PlatoRepository.class.getName()).log(Level.SEVERE, "Error al cerrar conexión de la base de datos", ex);
-        }
-
+    private Dish toDish(ResultSet rs) throws SQLException {
+        Dish dish = new Dish();
+        dish.setAtrIdDish(rs.getString("ID"));
+        dish.setAtrNameDish(rs.getString("NAME"));
+        // Sin ceros de sobra: 20000.00 se muestra como 20000
+        dish.setAtrPriceDish(rs.getBigDecimal("PRECIO").stripTrailingZeros().toPlainString());
+        dish.setAtrCategoriaDish(rs.getString("CATEGORIA"));
+        dish.setAtrDescriptionDish(rs.getString("DESCRIPCION"));
+        dish.setAtrTypeDish(rs.getString("TIPOPLATO"));
+        dish.setAtrVersion(rs.getLong("VERSION"));
+        return dish;
     }
 
 }
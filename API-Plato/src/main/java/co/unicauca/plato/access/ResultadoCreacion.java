@@ -0,0 +1,21 @@
+package co.unicauca.plato.access;
+
+/**
+ * Resultado de insertar un registro nuevo
+ *
+ * @author XIMENA
+ */
+public enum ResultadoCreacion {
+    /**
+     * Se insertó el registro
+     */
+    CREADO,
+    /**
+     * Ya había un registro con la misma llave, no se insertó nada
+     */
+    DUPLICADO,
+    /**
+     * Falló la consulta
+     */
+    ERROR
+}
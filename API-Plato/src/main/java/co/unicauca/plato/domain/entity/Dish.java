@@ -22,6 +22,9 @@ public class Dish
     
     //Categoria
     private String atrCategoriaDish;
+    
+    //Version, cambia en cada edicion; se expone como ETag
+    private long atrVersion;
 
     public Dish(String atrIdFood, String atrNameFood, String atrPriceFood, String Description, String atrTypeDish, String atrCategoriaDish)
     {
@@ -85,6 +88,14 @@ public class Dish
     public void setAtrCategoriaDish (String atrCategoriaDish){
        this.atrCategoriaDish = atrCategoriaDish;  
     }
+
+    public long getAtrVersion() {
+        return atrVersion;
+    }
+
+    public void setAtrVersion(long atrVersion) {
+        this.atrVersion = atrVersion;
+    }
     
     
 }
@@ -0,0 +1,57 @@
+package co.unicauca.plato.domain.entity;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Número de platos por categoría y por tipo, para los filtros de las
+ * pantallas de navegación
+ *
+ * @author XIMENA
+ */
+public class DishFacets
+{
+    //Total de platos
+    private int atrTotal;
+    //Categoria -> número de platos, en orden alfabético
+    private Map<String, Integer> atrCategorias;
+    //Tipo de plato -> número de platos, en orden alfabético
+    private Map<String, Integer> atrTipos;
+
+    public DishFacets()
+    {
+        atrCategorias = new TreeMap<>();
+        atrTipos = new TreeMap<>();
+    }
+
+    public DishFacets(int atrTotal, Map<String, Integer> atrCategorias, Map<String, Integer> atrTipos)
+    {
+        this.atrTotal = atrTotal;
+        this.atrCategorias = atrCategorias;
+        this.atrTipos = atrTipos;
+    }
+
+    public int getAtrTotal() {
+        return atrTotal;
+    }
+
+    public void setAtrTotal(int atrTotal) {
+        this.atrTotal = atrTotal;
+    }
+
+    public Map<String, Integer> getAtrCategorias() {
+        return atrCategorias;
+    }
+
+    public void setAtrCategorias(Map<String, Integer> atrCategorias) {
+        this.atrCategorias = atrCategorias;
+    }
+
+    public Map<String, Integer> getAtrTipos() {
+        return atrTipos;
+    }
+
+    public void setAtrTipos(Map<String, Integer> atrTipos) {
+        this.atrTipos = atrTipos;
+    }
+}
@@ -0,0 +1,29 @@
+package co.unicauca.plato.domain.entity;
+
+import java.util.List;
+
+/**
+ * Una página de platos y el cursor para pedir la siguiente
+ *
+ * @author XIMENA
+ */
+public class DishPage
+{
+    private final List<Dish> atrPlatos;
+    //null si es la última página
+    private final String atrNextCursor;
+
+    public DishPage(List<Dish> atrPlatos, String atrNextCursor)
+    {
+        this.atrPlatos = atrPlatos;
+        this.atrNextCursor = atrNextCursor;
+    }
+
+    public List<Dish> getAtrPlatos() {
+        return atrPlatos;
+    }
+
+    public String getAtrNextCursor() {
+        return atrNextCursor;
+    }
+}
@@ -0,0 +1,44 @@
+package co.unicauca.plato.domain.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Una página de resultados de la búsqueda de platos
+ *
+ * @author XIMENA
+ */
+public class DishSearchResult
+{
+    //Platos de la página, del más al menos relevante
+    private List<Dish> atrPlatos;
+    //Total de platos que coinciden con la búsqueda
+    private int atrTotal;
+
+    public DishSearchResult()
+    {
+        atrPlatos = new ArrayList<>();
+    }
+
+    public DishSearchResult(List<Dish> atrPlatos, int atrTotal)
+    {
+        this.atrPlatos = atrPlatos;
+        this.atrTotal = atrTotal;
+    }
+
+    public List<Dish> getAtrPlatos() {
+        return atrPlatos;
+    }
+
+    public void setAtrPlatos(List<Dish> atrPlatos) {
+        this.atrPlatos = atrPlatos;
+    }
+
+    public int getAtrTotal() {
+        return atrTotal;
+    }
+
+    public void setAtrTotal(int atrTotal) {
+        this.atrTotal = atrTotal;
+    }
+}
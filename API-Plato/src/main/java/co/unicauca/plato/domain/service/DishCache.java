@@ -0,0 +1,33 @@
+package co.unicauca.plato.domain.service;
+
+import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.infra.BoundedCache;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Cache de platos por id, compartido por toda la aplicación. Lo llena
+ * PlatoService al consultar y lo invalida al crear, editar o eliminar.
+ *
+ * @author XIMENA
+ */
+@ApplicationScoped
+public class DishCache extends BoundedCache<String, Dish>
+{
+    /**
+     * Platos que caben en el cache
+     */
+    private static final int TAMANO_MAXIMO = 10_000;
+    /**
+     * Minutos que vive un plato en el cache
+     */
+    private static final long VIDA_MINUTOS = 5;
+    /**
+     * Segundos que se recuerda que un id no existe
+     */
+    private static final long VIDA_NEGATIVA_SEGUNDOS = 30;
+
+    public DishCache() {
+        super(TAMANO_MAXIMO, TimeUnit.MINUTES.toSeconds(VIDA_MINUTOS), VIDA_NEGATIVA_SEGUNDOS, TimeUnit.SECONDS);
+    }
+}
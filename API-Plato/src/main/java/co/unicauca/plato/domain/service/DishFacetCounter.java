@@ -0,0 +1,189 @@
+package co.unicauca.plato.domain.service;
+
+import co.unicauca.plato.access.IPlatoRepository;
+import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishFacets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+/**
+ * Contadores en memoria de platos por categoría y por tipo.
+ *
+ * Se cargan al desplegar con una sola consulta agrupada y PlatoService los
+ * ajusta en cada creación, edición o eliminación, así leerlos no recorre la
+ * tabla plato. Se recargan cada 10 minutos para recoger los cambios hechos
+ * en otras instancias y corregir cualquier desfase.
+ *
+ * Cada escritura de PlatoService va entre empezarEscritura y
+ * terminarEscritura, desde que escribe en la base de datos hasta que avisa
+ * el cambio. La recarga cuenta sin escrituras a medias, así un cambio o ya
+ * está en la consulta y se avisó a los contadores viejos, o se avisa a los
+ * nuevos; nunca se cuenta dos veces ni se pierde.
+ *
+ * @author XIMENA
+ */
+@Singleton
+@Startup
+@DependsOn("DatabaseBootstrap")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DishFacetCounter
+{
+    @Inject
+    private IPlatoRepository repository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Contadores actuales, protegidos por lock
+     */
+    private DishFacets conteos = new DishFacets();
+    /**
+     * Las escrituras de platos la toman para lectura, varias a la vez; la
+     * recarga la toma para escritura mientras cuenta y reemplaza los
+     * contadores, así espera a que terminen las escrituras a medias y
+     * detiene las nuevas solo lo que dura la consulta agrupada
+     */
+    private final ReadWriteLock escrituras = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void init() {
+        recargar();
+    }
+
+    /**
+     * Carga de nuevo los contadores desde la base de datos
+     */
+    @Schedule(minute = "*/10", hour = "*", persistent = false)
+    public synchronized void recargar() {
+        DishFacets nuevos;
+        escrituras.writeLock().lock();
+        try {
+            nuevos = repository.contarFacetas();
+            if (nuevos != null) {
+                lock.writeLock().lock();
+                try {
+                    conteos = nuevos;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            escrituras.writeLock().unlock();
+        }
+        if (nuevos == null) {
+            Logger.getLogger(DishFacetCounter.class.getName()).log(Level.WARNING, "No se pudieron recargar los contadores de platos");
+        }
+    }
+
+    public void setPlatoRepository(IPlatoRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Marca el inicio de una escritura de platos. Se llama antes de escribir
+     * en la base de datos, y terminarEscritura después de avisar el cambio,
+     * en un finally.
+     */
+    public void empezarEscritura() {
+        escrituras.readLock().lock();
+    }
+
+    /**
+     * Marca el fin de una escritura de platos, ver empezarEscritura
+     */
+    public void terminarEscritura() {
+        escrituras.readLock().unlock();
+    }
+
+    /**
+     * Cuenta un plato nuevo
+     *
+     * @param dish plato creado
+     */
+    public void agregar(Dish dish) {
+        String categoria = dish.getAtrCategoriaDish();
+        String tipo = dish.getAtrTypeDish();
+        aplicar(facetas -> sumar(facetas, categoria, tipo, 1));
+    }
+
+    /**
+     * Mueve un plato editado de su categoría y tipo anteriores a los nuevos
+     *
+     * @param anterior plato antes de editarlo
+     * @param nuevo plato editado
+     */
+    public void cambiar(Dish anterior, Dish nuevo) {
+        String categoriaAnterior = anterior.getAtrCategoriaDish();
+        String tipoAnterior = anterior.getAtrTypeDish();
+        String categoria = nuevo.getAtrCategoriaDish();
+        String tipo = nuevo.getAtrTypeDish();
+        if (categoriaAnterior.equals(categoria) && tipoAnterior.equals(tipo)) {
+            return;
+        }
+        aplicar(facetas -> {
+            sumar(facetas, categoriaAnterior, tipoAnterior, -1);
+            sumar(facetas, categoria, tipo, 1);
+        });
+    }
+
+    /**
+     * Descuenta un plato eliminado
+     *
+     * @param dish plato eliminado
+     */
+    public void eliminar(Dish dish) {
+        String categoria = dish.getAtrCategoriaDish();
+        String tipo = dish.getAtrTypeDish();
+        aplicar(facetas -> sumar(facetas, categoria, tipo, -1));
+    }
+
+    /**
+     * @return copia de los contadores actuales
+     */
+    public DishFacets getFacetas() {
+        lock.readLock().lock();
+        try {
+            return new DishFacets(conteos.getAtrTotal(),
+                    new TreeMap<>(conteos.getAtrCategorias()), new TreeMap<>(conteos.getAtrTipos()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void aplicar(Consumer<DishFacets> cambio) {
+        lock.writeLock().lock();
+        try {
+            cambio.accept(conteos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void sumar(DishFacets facetas, String categoria, String tipo, int delta) {
+        facetas.setAtrTotal(Math.max(0, facetas.getAtrTotal() + delta));
+        sumar(facetas.getAtrCategorias(), categoria, delta);
+        sumar(facetas.getAtrTipos(), tipo, delta);
+    }
+
+    /**
+     * Suma al contador de un valor y lo quita si llega a cero
+     */
+    private static void sumar(Map<String, Integer> contadores, String valor, int delta) {
+        contadores.compute(valor, (k, actual) -> {
+            int nuevo = (actual == null ? 0 : actual) + delta;
+            return nuevo > 0 ? nuevo : null;
+        });
+    }
+}
@@ -0,0 +1,300 @@
+package co.unicauca.plato.domain.service;
+
+import co.unicauca.plato.access.IPlatoRepository;
+import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishSearchResult;
+import co.unicauca.plato.infra.PrefixIndex;
+import co.unicauca.plato.infra.Sugerencia;
+import co.unicauca.plato.infra.Utilities;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+/**
+ * Indice invertido en memoria para buscar platos por nombre, descripción,
+ * categoría y tipo, sin importar mayúsculas ni tildes.
+ *
+ * Cada palabra apunta a los platos que la contienen con un puntaje según el
+ * campo: el nombre pesa más que la categoría y el tipo, y estos más que la
+ * descripción. Una búsqueda exige todas las palabras; la última se toma como
+ * prefijo para poder buscar mientras se escribe.
+ *
+ * También guarda los nombres ordenados para autocompletar por prefijo.
+ *
+ * El indice se arma al desplegar y se recarga cada 10 minutos para recoger
+ * los cambios hechos en otras instancias. PlatoService lo actualiza en cada
+ * creación, edición o eliminación.
+ *
+ * @author XIMENA
+ */
+@Singleton
+@Startup
+@DependsOn("DatabaseBootstrap")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DishIndex
+{
+    private static final int PESO_NOMBRE = 4;
+    private static final int PESO_CATEGORIA = 2;
+    private static final int PESO_TIPO = 2;
+    private static final int PESO_DESCRIPCION = 1;
+
+    @Inject
+    private IPlatoRepository repository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Indice actual, protegido por lock
+     */
+    private Indice indice = new Indice();
+    /**
+     * Cambios hechos mientras se recarga el indice, para aplicarlos también
+     * al indice nuevo. Es null si no se está recargando.
+     */
+    private List<Consumer<Indice>> cambiosDuranteRecarga;
+
+    @PostConstruct
+    public void init() {
+        recargar();
+    }
+
+    /**
+     * Arma de nuevo el indice con todos los platos de la base de datos
+     */
+    @Schedule(minute = "*/10", hour = "*", persistent = false)
+    public synchronized void recargar() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            cambiosDuranteRecarga = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Indice nuevo = new Indice();
+        boolean completo = repository.forEach(nuevo::agregar);
+        lock.writeLock().lock();
+        try {
+            if (completo) {
+                cambiosDuranteRecarga.forEach(cambio -> cambio.accept(nuevo));
+                indice = nuevo;
+            }
+            cambiosDuranteRecarga = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Logger.getLogger(DishIndex.class.getName()).log(completo ? Level.FINE : Level.WARNING,
+                "Indice de busqueda de platos {0} en {1} ms",
+                new Object[]{completo ? "recargado" : "no recargado", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)});
+    }
+
+    /**
+     * Agrega un plato al indice o lo reemplaza si ya estaba
+     *
+     * @param dish plato
+     */
+    public void agregar(Dish dish) {
+        aplicar(indice -> indice.agregar(dish));
+    }
+
+    /**
+     * Saca un plato del indice
+     *
+     * @param idDish id del plato
+     */
+    public void eliminar(String idDish) {
+        aplicar(indice -> indice.eliminar(idDish));
+    }
+
+    /**
+     * Busca los platos que contienen todas las palabras del texto
+     *
+     * @param texto palabras a buscar
+     * @param offset platos a saltar
+     * @param limit máximo de platos a devolver
+     * @return página de platos, del más al menos relevante
+     */
+    public DishSearchResult buscar(String texto, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return indice.buscar(Utilities.tokens(texto), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca un plato en el indice
+     *
+     * @param idDish id del plato
+     * @return el plato como está en el indice, o null si no está
+     */
+    public Dish find(String idDish) {
+        lock.readLock().lock();
+        try {
+            return indice.platos.get(idDish);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los platos cuyo nombre empieza por un prefijo
+     *
+     * @param prefijo inicio del nombre
+     * @param limite máximo de sugerencias
+     * @return sugerencias en orden alfabético
+     */
+    public List<Sugerencia> autocompletar(String prefijo, int limite) {
+        lock.readLock().lock();
+        try {
+            return indice.nombres.buscar(prefijo, limite);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void aplicar(Consumer<Indice> cambio) {
+        lock.writeLock().lock();
+        try {
+            cambio.accept(indice);
+            if (cambiosDuranteRecarga != null) {
+                cambiosDuranteRecarga.add(cambio);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Indice {
+
+        /**
+         * Palabra -> (id del plato -> puntaje), ordenado para buscar prefijos
+         */
+        final TreeMap<String, Map<String, Integer>> terminos = new TreeMap<>();
+        final Map<String, Dish> platos = new HashMap<>();
+        final PrefixIndex nombres = new PrefixIndex();
+
+        void agregar(Dish dish) {
+            eliminar(dish.getAtrIdDish());
+            platos.put(dish.getAtrIdDish(), dish);
+            nombres.put(dish.getAtrIdDish(), dish.getAtrNameDish());
+            for (Map.Entry<String, Integer> termino : terminosDe(dish).entrySet()) {
+                terminos.computeIfAbsent(termino.getKey(), k -> new HashMap<>())
+                        .put(dish.getAtrIdDish(), termino.getValue());
+            }
+        }
+
+        void eliminar(String idDish) {
+            Dish anterior = platos.remove(idDish);
+            nombres.remove(idDish);
+            if (anterior == null) {
+                return;
+            }
+            for (String termino : terminosDe(anterior).keySet()) {
+                Map<String, Integer> postings = terminos.get(termino);
+                postings.remove(idDish);
+                if (postings.isEmpty()) {
+                    terminos.remove(termino);
+                }
+            }
+        }
+
+        DishSearchResult buscar(List<String> palabras, int offset, int limit) {
+            if (palabras.isEmpty()) {
+                return new DishSearchResult();
+            }
+            // Un conjunto de platos con puntaje por palabra; la última es prefijo
+            List<Map<String, Integer>> conjuntos = new ArrayList<>();
+            for (int i = 0; i < palabras.size() - 1; i++) {
+                Map<String, Integer> postings = terminos.get(palabras.get(i));
+                if (postings == null) {
+                    return new DishSearchResult();
+                }
+                conjuntos.add(postings);
+            }
+            Map<String, Integer> prefijo = prefijo(palabras.get(palabras.size() - 1));
+            if (prefijo.isEmpty()) {
+                return new DishSearchResult();
+            }
+            conjuntos.add(prefijo);
+            conjuntos.sort(Comparator.comparingInt(Map::size));
+
+            Map<String, Integer> puntajes = new HashMap<>();
+            candidatos:
+            for (Map.Entry<String, Integer> candidato : conjuntos.get(0).entrySet()) {
+                int puntaje = candidato.getValue();
+                for (int i = 1; i < conjuntos.size(); i++) {
+                    Integer otro = conjuntos.get(i).get(candidato.getKey());
+                    if (otro == null) {
+                        continue candidatos;
+                    }
+                    puntaje += otro;
+                }
+                puntajes.put(candidato.getKey(), puntaje);
+            }
+            List<Dish> encontrados = new ArrayList<>(puntajes.size());
+            for (String id : puntajes.keySet()) {
+                encontrados.add(platos.get(id));
+            }
+            encontrados.sort(Comparator.<Dish>comparingInt(dish -> -puntajes.get(dish.getAtrIdDish()))
+                    .thenComparing(dish -> dish.getAtrNameDish() == null ? "" : Utilities.normalize(dish.getAtrNameDish()))
+                    .thenComparing(Dish::getAtrIdDish));
+            int desde = Math.min(offset, encontrados.size());
+            int hasta = Math.min(desde + limit, encontrados.size());
+            return new DishSearchResult(new ArrayList<>(encontrados.subList(desde, hasta)), encontrados.size());
+        }
+
+        /**
+         * Platos con alguna palabra que empieza por el prefijo. La palabra
+         * exacta conserva su puntaje, las que solo empiezan por el prefijo
+         * valen la mitad.
+         */
+        private Map<String, Integer> prefijo(String prefijo) {
+            Map<String, Integer> platosPrefijo = new HashMap<>();
+            for (Map.Entry<String, Map<String, Integer>> termino
+                    : terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false).entrySet()) {
+                boolean exacto = termino.getKey().equals(prefijo);
+                for (Map.Entry<String, Integer> posting : termino.getValue().entrySet()) {
+                    int puntaje = exacto ? posting.getValue() : Math.max(1, posting.getValue() / 2);
+                    platosPrefijo.merge(posting.getKey(), puntaje, Math::max);
+                }
+            }
+            return platosPrefijo;
+        }
+
+        /**
+         * Palabras de un plato con su puntaje, sumando el peso de cada campo
+         * en que aparece
+         */
+        private static Map<String, Integer> terminosDe(Dish dish) {
+            Map<String, Integer> puntajes = new HashMap<>();
+            sumar(puntajes, dish.getAtrNameDish(), PESO_NOMBRE);
+            sumar(puntajes, dish.getAtrCategoriaDish(), PESO_CATEGORIA);
+            sumar(puntajes, dish.getAtrTypeDish(), PESO_TIPO);
+            sumar(puntajes, dish.getAtrDescriptionDish(), PESO_DESCRIPCION);
+            return puntajes;
+        }
+
+        private static void sumar(Map<String, Integer> puntajes, String campo, int peso) {
+            for (String token : Utilities.tokens(campo)) {
+                puntajes.merge(token, peso, Integer::sum);
+            }
+        }
+    }
+}
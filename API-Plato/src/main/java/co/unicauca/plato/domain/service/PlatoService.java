@@ -4,12 +4,26 @@ package co.unicauca.plato.domain.service;
 
 
 import co.unicauca.plato.access.IPlatoRepository;
+import co.unicauca.plato.access.ResultadoCreacion;
 import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishBatch;
+import co.unicauca.plato.domain.entity.DishFacets;
+import co.unicauca.plato.domain.entity.DishPage;
+import co.unicauca.plato.domain.entity.DishSearchResult;
 import co.unicauca.plato.domain.validators.ValidationError;
 import co.unicauca.plato.infra.DomainErrors;
 import co.unicauca.plato.infra.Error;
+import co.unicauca.plato.infra.Sugerencia;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 /**
@@ -20,6 +34,16 @@ import javax.inject.Inject;
 @RequestScoped
 public class PlatoService 
 {
+    /**
+     * Número máximo de platos que se pueden consultar en un lote
+     */
+    public static final int MAX_LOTE = 100;
+    
+    /**
+     * Número máximo de platos que se pueden importar en una petición
+     */
+    public static final int MAX_IMPORTACION = 5000;
+    
       /**
      * Dependencia de una abstracción No es algo concreto. No se sabe como será
      * implementado
@@ -28,6 +52,45 @@ public class PlatoService
     
    private IPlatoRepository repository;
     
+    /**
+     * Errores de validación de la petición actual
+     */
+    @Inject
+    private DomainErrors domainErrors;
+    
+    /**
+     * Cache de platos por id, delante del repositorio
+     */
+    @Inject
+    private DishCache cache;
+    
+    /**
+     * Indice de búsqueda de platos
+     */
+    @Inject
+    private DishIndex index;
+    
+    /**
+     * Contadores de platos por categoría y tipo
+     */
+    @Inject
+    private DishFacetCounter facetas;
+    
+    /**
+     * Número máximo de platos por página de búsqueda
+     */
+    public static final int MAX_PAGINA = 100;
+    
+    /**
+     * Número máximo de sugerencias del autocompletado
+     */
+    public static final int MAX_SUGERENCIAS = 50;
+    
+    /**
+     * Precio máximo que cabe en la columna PRECIO, numeric(12,2)
+     */
+    private static final BigDecimal PRECIO_MAXIMO = new BigDecimal("9999999999.99");
+    
     
     /**
      * Busca un plato por su Id
@@ -36,13 +99,239 @@ public class PlatoService
      * @return plato, o null, si no lo encuentra
      */
     public Dish findByIdDish(String prmIdDish) {
-        return repository.findByIdDish(prmIdDish);
+        return cache.get(prmIdDish, repository::findByIdDish);
+    }
+    
+    /**
+     * Busca varios platos por su id con una sola consulta
+     *
+     * @param idsDish ids de los platos, como máximo MAX_LOTE
+     * @return platos encontrados en el orden pedido y los ids que no existen,
+     * o null si el lote no es válido
+     */
+    public DishBatch findByIds(List<String> idsDish) {
+        List<Error> errors = new ArrayList<>();
+        if (idsDish == null || idsDish.isEmpty()) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Ids", "La lista de ids de platos es obligatoria"));
+        } else if (idsDish.size() > MAX_LOTE) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Ids", "Se pueden consultar máximo " + MAX_LOTE + " platos por petición"));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        Set<String> ids = new LinkedHashSet<>(idsDish);
+        Map<String, Dish> encontrados = new HashMap<>();
+        for (Dish dish : repository.findByIds(ids)) {
+            encontrados.put(dish.getAtrIdDish(), dish);
+        }
+        DishBatch batch = new DishBatch();
+        for (String id : ids) {
+            Dish dish = encontrados.get(id);
+            if (dish != null) {
+                batch.getAtrPlatos().add(dish);
+            } else {
+                batch.getAtrFaltantes().add(id);
+            }
+        }
+        return batch;
     }
     
     public void setPlatoRepository(IPlatoRepository repository){
         this.repository = repository;
     }
     
+    public void setDishCache(DishCache cache){
+        this.cache = cache;
+    }
+    
+    public void setDishIndex(DishIndex index){
+        this.index = index;
+    }
+    
+    public void setDishFacetCounter(DishFacetCounter facetas){
+        this.facetas = facetas;
+    }
+    
+    /**
+     * Cuenta los platos por categoría y por tipo. Se responde desde los
+     * contadores en memoria, sin consultar la base de datos.
+     *
+     * @return contadores de platos
+     */
+    public DishFacets getFacetas() {
+        return facetas.getFacetas();
+    }
+    
+    /**
+     * Sugiere platos cuyo nombre empieza por un prefijo, sin importar
+     * mayúsculas ni tildes
+     *
+     * @param prefijo inicio del nombre
+     * @param limite máximo de sugerencias, hasta MAX_SUGERENCIAS
+     * @return sugerencias en orden alfabético, o null si los parámetros no
+     * son válidos
+     */
+    public List<Sugerencia> autocompletar(String prefijo, int limite) {
+        List<Error> errors = new ArrayList<>();
+        if (prefijo == null || prefijo.trim().isEmpty()) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "q", "El prefijo es obligatorio"));
+        }
+        if (limite < 1 || limite > MAX_SUGERENCIAS) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "limit", "El limit debe estar entre 1 y " + MAX_SUGERENCIAS));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        return index.autocompletar(prefijo, limite);
+    }
+    
+    /**
+     * Busca platos por nombre, descripción, categoría y tipo, sin importar
+     * mayúsculas ni tildes. Se responde desde el indice en memoria.
+     *
+     * @param texto palabras a buscar, todas deben aparecer en el plato
+     * @param offset platos a saltar
+     * @param limit máximo de platos a devolver, hasta MAX_PAGINA
+     * @return página de platos ordenada por relevancia, o null si los
+     * parámetros no son válidos
+     */
+    public DishSearchResult buscar(String texto, int offset, int limit) {
+        List<Error> errors = new ArrayList<>();
+        if (texto == null || texto.trim().isEmpty()) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "q", "El texto a buscar es obligatorio"));
+        }
+        if (offset < 0) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "offset", "El offset no puede ser negativo"));
+        }
+        if (limit < 1 || limit > MAX_PAGINA) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "limit", "El limit debe estar entre 1 y " + MAX_PAGINA));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        return index.buscar(texto, offset, limit);
+    }
+    
+    /**
+     * Lista los platos ordenados por precio, por páginas. El filtro y el
+     * orden se resuelven en la base de datos con los indices de precio.
+     *
+     * @param min precio mínimo, o null
+     * @param max precio máximo, o null
+     * @param categoria categoría exacta, o null para todas
+     * @param orden asc o desc
+     * @param cursor cursor devuelto por la página anterior, o null para la
+     * primera
+     * @param limit tamaño de la página, entre 1 y MAX_PAGINA
+     * @return página de platos, o null si los parámetros no son válidos
+     */
+    public DishPage findPorPrecio(String min, String max, String categoria, String orden, String cursor, int limit) {
+        List<Error> errors = new ArrayList<>();
+        BigDecimal precioMin = null;
+        BigDecimal precioMax = null;
+        if (min != null && !min.isEmpty()) {
+            precioMin = parsePrecio(min);
+            if (precioMin == null) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, "min", "El precio mínimo no es válido"));
+            }
+        }
+        if (max != null && !max.isEmpty()) {
+            precioMax = parsePrecio(max);
+            if (precioMax == null) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, "max", "El precio máximo no es válido"));
+            }
+        }
+        if (precioMin != null && precioMax != null && precioMin.compareTo(precioMax) > 0) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "min", "El precio mínimo no puede ser mayor que el máximo"));
+        }
+        if (!"asc".equals(orden) && !"desc".equals(orden)) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "orden", "El orden debe ser asc o desc"));
+        }
+        if (limit < 1 || limit > MAX_PAGINA) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "limit", "El limit debe estar entre 1 y " + MAX_PAGINA));
+        }
+        String[] after = {null, null};
+        if (cursor != null && !cursor.isEmpty()) {
+            after = decodeCursor(cursor, orden);
+            if (after == null) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, "cursor", "El cursor no es válido para este orden"));
+            }
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        if (categoria != null && categoria.isEmpty()) {
+            categoria = null;
+        }
+        boolean descendente = "desc".equals(orden);
+        BigDecimal afterPrecio = after[0] == null ? null : new BigDecimal(after[0]);
+        // Se pide una fila de más para saber si hay otra página
+        List<Dish> dishs = repository.findPorPrecio(precioMin, precioMax, categoria, descendente, afterPrecio, after[1], limit + 1);
+        String nextCursor = null;
+        if (dishs.size() > limit) {
+            dishs = dishs.subList(0, limit);
+            Dish last = dishs.get(limit - 1);
+            nextCursor = encodeCursor(orden, last);
+        }
+        return new DishPage(dishs, nextCursor);
+    }
+    
+    /**
+     * El cursor es el orden, el precio y el id de la última fila de la
+     * página, codificados en base64
+     */
+    private String encodeCursor(String orden, Dish last) {
+        String token = orden + "\n" + last.getAtrPriceDish() + "\n" + last.getAtrIdDish();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * @return precio e id del cursor, o null si no es válido o es de otro
+     * orden
+     */
+    private String[] decodeCursor(String cursor, String orden) {
+        try {
+            String[] token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", -1);
+            if (token.length != 3 || !token[0].equals(orden) || parsePrecio(token[1]) == null) {
+                return null;
+            }
+            return new String[]{token[1], token[2]};
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Interpreta un precio: un número no negativo con máximo dos decimales
+     *
+     * @param precio texto del precio
+     * @return el precio, o null si no es válido
+     */
+    private static BigDecimal parsePrecio(String precio) {
+        BigDecimal valor;
+        try {
+            valor = new BigDecimal(precio.trim()).stripTrailingZeros();
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        if (valor.signum() < 0 || valor.scale() > 2 || valor.compareTo(PRECIO_MAXIMO) > 0) {
+            return null;
+        }
+        return valor;
+    }
+    
+    /**
+     * Escribe un precio válido como lo devuelve la base de datos, sin ceros
+     * de sobra, para que el plato del indice coincida con el guardado
+     */
+    private static String formatPrecio(String precio) {
+        return parsePrecio(precio).toPlainString();
+    }
+    
     /**
      * Busca todos los platos
      *
@@ -53,6 +342,17 @@ public class PlatoService
         return dishs;
     }
     
+    /**
+     * Recorre todos los platos sin cargarlos en memoria
+     *
+     * @param action acción a ejecutar con cada plato
+     * @return true si recorrió todos los platos, false si falló la consulta,
+     * quizás después de ejecutar la acción con algunos
+     */
+    public boolean forEach(Consumer<Dish> action) {
+        return repository.forEach(action);
+    }
+    
     /**
      * Crea un nuevo plato
      *
@@ -66,37 +366,170 @@ public class PlatoService
             errors.add(error);
         }
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
+            domainErrors.setErrors(errors);
             return false;
         }
-        //Si pasa las validaciones se graba en la bd
-        return repository.create(newPlato);
+        newPlato.setAtrPriceDish(formatPrecio(newPlato.getAtrPriceDish()));
+        //Si pasa las validaciones se graba en la bd; el insert mismo detecta
+        //si el id ya existe
+        ResultadoCreacion resultado;
+        facetas.empezarEscritura();
+        try {
+            resultado = repository.create(newPlato);
+            if (resultado == ResultadoCreacion.CREADO) {
+                facetas.agregar(newPlato);
+            }
+        } finally {
+            facetas.terminarEscritura();
+        }
+        // Olvida la búsqueda sin resultado que haya quedado en cache
+        cache.invalidate(newPlato.getAtrIdDish());
+        switch (resultado) {
+            case CREADO:
+                index.agregar(newPlato);
+                return true;
+            case DUPLICADO:
+                errors.add(new Error(ValidationError.INVALID_FIELD, "Id", "El Id del plato ya existe"));
+                break;
+            default:
+                errors.add(new Error(ValidationError.INVALID_FIELD, "Id", "No se pudo guardar el plato"));
+        }
+        domainErrors.setErrors(errors);
+        return false;
     }
     
     
     /**
-     * Edita o actualiza un plato
+     * Importa varios platos en una sola transacción. Todo el lote se valida
+     * en memoria, la existencia de los ids se verifica con una sola consulta
+     * y los platos se insertan en batch. Si algún plato tiene errores no se
+     * importa ninguno; cada error indica la posición del plato en el lote.
+     *
+     * @param newPlatos platos a importar
+     * @return true si los importa todos, false si no importa ninguno
+     */
+    public boolean importar(List<Dish> newPlatos) {
+        List<Error> errors = validateImportar(newPlatos);
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return false;
+        }
+        for (Dish dish : newPlatos) {
+            dish.setAtrPriceDish(formatPrecio(dish.getAtrPriceDish()));
+        }
+        facetas.empezarEscritura();
+        try {
+            if (!repository.createAll(newPlatos)) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, "Platos", "No se pudieron guardar los platos, no se importó ninguno"));
+                domainErrors.setErrors(errors);
+                return false;
+            }
+            newPlatos.forEach(facetas::agregar);
+        } finally {
+            facetas.terminarEscritura();
+        }
+        // Olvida las búsquedas sin resultado que hayan quedado en cache
+        for (Dish dish : newPlatos) {
+            cache.invalidate(dish.getAtrIdDish());
+            index.agregar(dish);
+        }
+        return true;
+    }
+    
+    /**
+     * Valida un lote de platos a importar
+     *
+     * @param newPlatos platos
+     * @return lista de errores de negocio, el campo indica la posición del
+     * plato en el lote, por ejemplo [3].Precio
+     */
+    private List<Error> validateImportar(List<Dish> newPlatos) {
+        List<Error> errors = new ArrayList<>();
+        if (newPlatos == null || newPlatos.isEmpty()) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "Platos", "La lista de platos es obligatoria"));
+            return errors;
+        }
+        if (newPlatos.size() > MAX_IMPORTACION) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "Platos", "Se pueden importar máximo " + MAX_IMPORTACION + " platos por petición"));
+            return errors;
+        }
+        Map<String, Integer> posiciones = new HashMap<>();
+        for (int i = 0; i < newPlatos.size(); i++) {
+            Dish dish = newPlatos.get(i);
+            String prefijo = "[" + i + "].";
+            if (dish == null) {
+                errors.add(new Error(ValidationError.EMPTY_FIELD, "[" + i + "]", "El plato es obligatorio"));
+                continue;
+            }
+            for (Error error : validarCampos(dish)) {
+                errors.add(new Error(error.code, prefijo + error.field, error.description));
+            }
+            String id = dish.getAtrIdDish();
+            if (id == null || id.isEmpty()) {
+                errors.add(new Error(ValidationError.EMPTY_FIELD, prefijo + "Id", "La identificacion del plato es obligatorio"));
+            } else if (posiciones.putIfAbsent(id, i) != null) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, prefijo + "Id",
+                        "El Id del plato está repetido en el lote, ya aparece en la posición " + posiciones.get(id)));
+            }
+        }
+        if (!posiciones.isEmpty()) {
+            for (String id : repository.findExistingIds(posiciones.keySet())) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, "[" + posiciones.get(id) + "].Id", "El Id del plato ya existe"));
+            }
+        }
+        return errors;
+    }
+    
+    /**
+     * Edita o actualiza un plato con una sola consulta. Si se da la versión
+     * que leyó el cliente, solo se edita si nadie más lo editó después; si
+     * no, el error tiene el código VERSION_CONFLICT.
      *
      * @param Id id del plato 
      * @param newPlato plato a editar en el sistema
-     * @return true si lo actualiza, false si no
+     * @param version versión esperada del plato, o null para editarlo sin
+     * verificarla
+     * @return el plato editado con su versión nueva, o null si no lo
+     * actualiza
      */
-    public boolean update(String Id, Dish newPlato) {
-        List<Error> errors = validateUpdate(Id, newPlato);
+    public Dish update(String Id, Dish newPlato, Long version) {
+        List<Error> errors = validarCampos(newPlato);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
-            return false;
+            domainErrors.setErrors(errors);
+            return null;
         }
-        Dish dishAux = this.findByIdDish(Id);
+        // Plato antes de editarlo según el indice en memoria, para mover los
+        // contadores sin consultar la base de datos
+        Dish anterior = index.find(Id);
+        // Copia del plato, el del cache no se modifica
+        Dish dishAux = new Dish();
+        dishAux.setAtrIdDish(Id);
         dishAux.setAtrNameDish(newPlato.getAtrNameDish());
-        dishAux.setAtrPriceDish(newPlato.getAtrPriceDish());
+        dishAux.setAtrPriceDish(formatPrecio(newPlato.getAtrPriceDish()));
         dishAux.setAtrCategoriaDish(newPlato.getAtrCategoriaDish());
         dishAux.setAtrDescriptionDish(newPlato.getAtrDescriptionDish());
         dishAux.setAtrTypeDish(newPlato.getAtrTypeDish());
         
            
-        repository.update(dishAux);
-        return true;
+        Dish actualizado;
+        facetas.empezarEscritura();
+        try {
+            actualizado = repository.update(dishAux, version);
+            // Si el indice tenía otra versión no se sabe de dónde sale el
+            // plato; los contadores se corrigen en la siguiente recarga
+            if (actualizado != null && anterior != null && anterior.getAtrVersion() + 1 == actualizado.getAtrVersion()) {
+                facetas.cambiar(anterior, actualizado);
+            }
+        } finally {
+            facetas.terminarEscritura();
+        }
+        cache.invalidate(Id);
+        if (actualizado == null) {
+            domainErrors.setErrors(validateUpdateFallido(Id, version));
+            return null;
+        }
+        index.agregar(actualizado);
+        return actualizado;
     }
     
     /**
@@ -109,11 +542,25 @@ public class PlatoService
         //Validate plato
         List<Error> errors = validateDelete(idDish);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
+            domainErrors.setErrors(errors);
             return false;
         }
-        // Pasada la validación, se puede borrar de la bd
-        return repository.delete(idDish);
+        // Pasada la validación, se puede borrar de la bd. Se descuenta la
+        // categoría y el tipo de la fila borrada, el plato del cache puede
+        // estar desactualizado
+        Dish eliminado;
+        facetas.empezarEscritura();
+        try {
+            eliminado = repository.delete(idDish);
+            if (eliminado != null) {
+                facetas.eliminar(eliminado);
+            }
+        } finally {
+            facetas.terminarEscritura();
+        }
+        cache.invalidate(idDish);
+        index.eliminar(idDish);
+        return eliminado != null;
     }
     
     /**
@@ -133,42 +580,32 @@ public class PlatoService
             errors.add(error);
         }
         */
-        //Validar que no exista el plato
-        
-        if(newPlato.getAtrIdDish() != null){
-            if (!newPlato.getAtrIdDish().isEmpty()) {
-
-                Dish dishAux = repository.findByIdDish(newPlato.getAtrIdDish());
-
-                if (dishAux != null) {
-                    // El usuario ya existe
-                    Error error = new Error(ValidationError.INVALID_FIELD, "Id", "El Id del plato ya existe");
-                    errors.add(error);
-                }
-            }
-        }
+        //Que no exista el plato lo verifica el insert, ver create
         return errors;
     }
 
     /**
-     * Valida que el plato esté correcto antes de editarlo en la bd
+     * Averigua por qué no se pudo editar un plato. Solo se consulta cuando
+     * falla la edición, así una edición exitosa es una sola consulta.
      * @param Id identificacion del plato
-     * @param newPlato plato
+     * @param version versión esperada del plato, o null
      * @return lista de errores de negocio
      */
-    private List<Error> validateUpdate(String Id, Dish newPlato) {
-         List<Error> errors = new ArrayList<>();
-        //Validar usuario
-        errors = validarCampos(newPlato);
-        
-         // Validar que exista el plato
+    private List<Error> validateUpdateFallido(String Id, Long version) {
+        List<Error> errors = new ArrayList<>();
         Dish dishAux = repository.findByIdDish(Id);
         if (dishAux == null) {
             // El plato no existe
             Error error = new Error(ValidationError.INVALID_FIELD, "Id", "El identificador del plato no existe");
             errors.add(error);
+        } else if (version != null && dishAux.getAtrVersion() != version) {
+            // Otro lo editó después de que el cliente lo leyó
+            Error error = new Error(ValidationError.VERSION_CONFLICT, "Version", "El plato fue modificado por otro usuario, consúltelo de nuevo");
+            errors.add(error);
+        } else {
+            Error error = new Error(ValidationError.INVALID_FIELD, "Id", "No se pudo modificar el plato");
+            errors.add(error);
         }
-
         return errors;
     }
 
@@ -191,6 +628,9 @@ public class PlatoService
         if (newPlato.getAtrPriceDish()== null || newPlato.getAtrPriceDish().isEmpty()) {
             Error error = new Error(ValidationError.EMPTY_FIELD, "Precio", "El precio del plato es obligatorio");
             errors.add(error);
+        } else if (parsePrecio(newPlato.getAtrPriceDish()) == null) {
+            Error error = new Error(ValidationError.INVALID_FIELD, "Precio", "El precio del plato debe ser un número no negativo con máximo dos decimales");
+            errors.add(error);
         }
         if (newPlato.getAtrCategoriaDish()== null || newPlato.getAtrCategoriaDish().isEmpty()) {
             Error error = new Error(ValidationError.EMPTY_FIELD, "Categoria", "La categoria del plato es obligatorio");
@@ -218,7 +658,7 @@ public class PlatoService
         
         List<Error> errors = new ArrayList<>();
         // Validar que exista el plato
-        Dish dishAux = repository.findByIdDish(Id);
+        Dish dishAux = this.findByIdDish(Id);
 
         if (dishAux == null) {
             // El plato no existe
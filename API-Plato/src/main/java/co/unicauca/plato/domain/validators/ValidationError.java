@@ -6,5 +6,5 @@ package co.unicauca.plato.domain.validators;
  * @author Libardo, Julio
  */
 public enum ValidationError {
-    INVALID_FIELD, EMPTY_FIELD;
+    INVALID_FIELD, EMPTY_FIELD, VERSION_CONFLICT;
 }
@@ -0,0 +1,38 @@
+package co.unicauca.plato.infra;
+
+/**
+ * Contadores de uso de un cache
+ *
+ * @author Libardo, Julio
+ */
+public class CacheStats {
+
+    /**
+     * Entradas actuales
+     */
+    public final int tamano;
+    /**
+     * Entradas máximas
+     */
+    public final int tamanoMaximo;
+    /**
+     * Consultas resueltas desde el cache
+     */
+    public final long aciertos;
+    /**
+     * Consultas que tuvieron que ir a la base de datos
+     */
+    public final long fallos;
+    /**
+     * Entradas desalojadas por falta de espacio
+     */
+    public final long desalojos;
+
+    public CacheStats(int tamano, int tamanoMaximo, long aciertos, long fallos, long desalojos) {
+        this.tamano = tamano;
+        this.tamanoMaximo = tamanoMaximo;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojos = desalojos;
+    }
+}
@@ -2,23 +2,27 @@ package co.unicauca.plato.infra;
 
 import java.util.ArrayList;
 import java.util.List;
+import javax.enterprise.context.RequestScoped;
 
 /**
- * Lista de errores de validación del dominio
+ * Lista de errores de validación del dominio de la petición actual. Es un
+ * bean de alcance de petición: cada petición tiene su propia lista, así los
+ * errores de una no se mezclan con los de otra que se atiende al mismo tiempo.
  *
  * @author Libardo, Julio
  *
  */
+@RequestScoped
 public class DomainErrors {
 
-    private static List<Error> errors = new ArrayList<>();
+    private List<Error> errors = new ArrayList<>();
 
-    public static List<Error> getErrors() {
+    public List<Error> getErrors() {
         return errors;
     }
 
-    public static void setErrors(List<Error> errors) {
-        DomainErrors.errors = errors;
+    public void setErrors(List<Error> errors) {
+        this.errors = errors;
     }
 
 }
@@ -0,0 +1,80 @@
+package co.unicauca.plato.infra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Indice de nombres para autocompletar por prefijo, sin importar mayúsculas
+ * ni tildes. Los nombres normalizados se guardan ordenados, así los que
+ * empiezan por un prefijo quedan contiguos y se encuentran con una búsqueda
+ * logarítmica. La llave es el nombre normalizado, un separador y el id, para
+ * que dos elementos con el mismo nombre no se pisen.
+ *
+ * No es seguro para hilos; quien lo usa debe protegerlo.
+ *
+ * @author XIMENA
+ */
+public class PrefixIndex {
+
+    /**
+     * Separa el nombre del id en la llave; es menor que cualquier letra, así
+     * "pollo" queda antes que "pollo asado"
+     */
+    private static final char SEPARADOR = '\0';
+
+    private final TreeMap<String, Sugerencia> entradas = new TreeMap<>();
+    /**
+     * Llave actual de cada id, para reemplazar o quitar su nombre
+     */
+    private final Map<String, String> llaves = new HashMap<>();
+
+    /**
+     * Agrega o reemplaza el nombre de un elemento
+     *
+     * @param id identificador
+     * @param nombre nombre, si es null el elemento se quita
+     */
+    public void put(String id, String nombre) {
+        remove(id);
+        if (nombre == null || nombre.trim().isEmpty()) {
+            return;
+        }
+        String llave = Utilities.normalize(nombre) + SEPARADOR + id;
+        entradas.put(llave, new Sugerencia(id, nombre));
+        llaves.put(id, llave);
+    }
+
+    /**
+     * Quita un elemento
+     *
+     * @param id identificador
+     */
+    public void remove(String id) {
+        String llave = llaves.remove(id);
+        if (llave != null) {
+            entradas.remove(llave);
+        }
+    }
+
+    /**
+     * Busca los nombres que empiezan por un prefijo
+     *
+     * @param prefijo inicio del nombre
+     * @param limite máximo de sugerencias
+     * @return sugerencias en orden alfabético
+     */
+    public List<Sugerencia> buscar(String prefijo, int limite) {
+        String inicio = Utilities.normalize(prefijo);
+        List<Sugerencia> sugerencias = new ArrayList<>(limite);
+        for (Sugerencia sugerencia : entradas.subMap(inicio, true, inicio + Character.MAX_VALUE, false).values()) {
+            if (sugerencias.size() == limite) {
+                break;
+            }
+            sugerencias.add(sugerencia);
+        }
+        return sugerencias;
+    }
+}
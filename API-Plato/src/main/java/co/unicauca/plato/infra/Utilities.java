@@ -1,5 +1,10 @@
 package co.unicauca.plato.infra;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Utilidades varias utilizadas por otras clases
  *
@@ -27,5 +32,37 @@ public class Utilities {
         return resultado;
     }
 
-}
+    /**
+     * Normaliza un texto para compararlo: sin espacios al inicio y al final,
+     * en minúsculas y sin tildes
+     *
+     * @param str texto a normalizar
+     * @return texto normalizado
+     */
+    public static String normalize(String str) {
+        String sinTildes = Normalizer.normalize(str.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parte un texto en palabras normalizadas, separadas por cualquier
+     * caracter que no sea letra ni dígito
+     *
+     * @param str texto, puede ser null
+     * @return palabras en el orden del texto
+     */
+    public static List<String> tokens(String str) {
+        List<String> tokens = new ArrayList<>();
+        if (str == null) {
+            return tokens;
+        }
+        for (String token : normalize(str).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
 
+}
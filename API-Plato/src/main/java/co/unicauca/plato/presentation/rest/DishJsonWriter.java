@@ -0,0 +1,129 @@
+package co.unicauca.plato.presentation.rest;
+
+import co.unicauca.plato.domain.entity.Dish;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+/**
+ * Escribe platos en JSON directamente sobre la respuesta, a medida que se
+ * leen de la base de datos. Soporta un arreglo JSON o NDJSON (un plato por
+ * línea). Los nombres de los campos son los mismos que produce JSON-B para
+ * Dish.
+ *
+ * @author XIMENA
+ */
+public class DishJsonWriter {
+
+    /**
+     * Tipo de contenido de NDJSON
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Platos que se escriben entre cada envío al cliente
+     */
+    private static final int PLATOS_POR_ENVIO = 50;
+
+    private static final JsonGeneratorFactory FACTORY = Json.createGeneratorFactory(Collections.emptyMap());
+
+    private final OutputStream out;
+    private final boolean ndjson;
+    private final JsonGenerator arreglo;
+    private int escritos;
+
+    /**
+     * @param out salida de la respuesta
+     * @param ndjson true para NDJSON, false para un arreglo JSON
+     */
+    public DishJsonWriter(OutputStream out, boolean ndjson) {
+        this.out = out;
+        this.ndjson = ndjson;
+        if (ndjson) {
+            arreglo = null;
+        } else {
+            arreglo = FACTORY.createGenerator(new NoCierra(out), StandardCharsets.UTF_8);
+            arreglo.writeStartArray();
+        }
+    }
+
+    /**
+     * Escribe un plato
+     *
+     * @param dish plato
+     * @throws IOException si el cliente cerró la conexión
+     */
+    public void write(Dish dish) throws IOException {
+        if (ndjson) {
+            try (JsonGenerator linea = FACTORY.createGenerator(new NoCierra(out), StandardCharsets.UTF_8)) {
+                escribir(linea, dish);
+            }
+            out.write('\n');
+        } else {
+            escribir(arreglo, dish);
+        }
+        if (++escritos % PLATOS_POR_ENVIO == 0) {
+            if (arreglo != null) {
+                arreglo.flush();
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Cierra el arreglo y envía lo que falte
+     *
+     * @throws IOException si el cliente cerró la conexión
+     */
+    public void finish() throws IOException {
+        if (arreglo != null) {
+            arreglo.writeEnd();
+            arreglo.close();
+        }
+        out.flush();
+    }
+
+    private void escribir(JsonGenerator gen, Dish dish) {
+        gen.writeStartObject();
+        campo(gen, "atrCategoriaDish", dish.getAtrCategoriaDish());
+        campo(gen, "atrDescriptionDish", dish.getAtrDescriptionDish());
+        campo(gen, "atrIdDish", dish.getAtrIdDish());
+        campo(gen, "atrNameDish", dish.getAtrNameDish());
+        campo(gen, "atrPriceDish", dish.getAtrPriceDish());
+        campo(gen, "atrTypeDish", dish.getAtrTypeDish());
+        gen.write("atrVersion", dish.getAtrVersion());
+        gen.writeEnd();
+    }
+
+    private void campo(JsonGenerator gen, String nombre, String valor) {
+        if (valor != null) {
+            gen.write(nombre, valor);
+        }
+    }
+
+    /**
+     * Evita que los generadores cierren la salida de la respuesta, la
+     * cierra el contenedor
+     */
+    private static class NoCierra extends FilterOutputStream {
+
+        NoCierra(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
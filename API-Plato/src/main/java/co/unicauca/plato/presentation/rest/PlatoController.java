@@ -2,21 +2,39 @@ package co.unicauca.plato.presentation.rest;
 
 import co.unicauca.plato.domain.service.PlatoService;
 import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishBatch;
+import co.unicauca.plato.domain.entity.DishFacets;
+import co.unicauca.plato.domain.entity.DishPage;
+import co.unicauca.plato.domain.entity.DishSearchResult;
+import co.unicauca.plato.domain.validators.ValidationError;
 import co.unicauca.plato.infra.DomainErrors;
+import co.unicauca.plato.infra.Error;
 import co.unicauca.plato.infra.JsonResponse;
+import co.unicauca.plato.infra.Sugerencia;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
 
 
@@ -39,19 +57,61 @@ public class PlatoController {
     @Inject
     private PlatoService service;
     
+    /**
+     * Errores de validación de la petición actual
+     */
+    @Inject
+    private DomainErrors domainErrors;
+    
     public PlatoController() {
         service = new PlatoService();
       
     }
     /*
+        Los platos se escriben en la respuesta a medida que se leen de la
+        base de datos, sin armar la lista completa en memoria.
         Su uso desde consola mediante client url:
         curl -X GET http://localhost:8084/API-Plato/plato-service/plato/ 
 
      */
     @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public List<Dish> findAll() {
-        return service.findAll();
+    public StreamingOutput findAll() {
+        return out -> stream(out, false);
+    }
+    
+    /*
+        Igual que findAll pero en NDJSON, un plato por línea.
+        Su uso desde consola mediante client url:
+        curl -X GET -H 'Accept: application/x-ndjson' http://localhost:8084/API-Plato/plato-service/plato/ 
+
+     */
+    @GET
+    @Produces({DishJsonWriter.NDJSON})
+    public StreamingOutput findAllNdjson() {
+        return out -> stream(out, true);
+    }
+    
+    private void stream(OutputStream out, boolean ndjson) throws IOException {
+        DishJsonWriter writer = new DishJsonWriter(out, ndjson);
+        boolean recorridos;
+        try {
+            recorridos = service.forEach(dish -> {
+                try {
+                    writer.write(dish);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        if (!recorridos) {
+            // Sin cerrar el arreglo: la respuesta se aborta y el cliente no
+            // confunde una lista cortada con la lista completa
+            throw new IOException("No se pudieron leer todos los platos de la base de datos");
+        }
+        writer.finish();
     }
     
     /*
@@ -62,8 +122,151 @@ public class PlatoController {
     @GET
     @Path("{Id}")
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    public Dish findByIdDish(@PathParam("Id") String Id) {
-        return service.findByIdDish(Id);
+    public Response findByIdDish(@PathParam("Id") String Id) {
+        Dish dish = service.findByIdDish(Id);
+        if (dish == null) {
+            return Response.noContent().build();
+        }
+        // La versión viaja en el ETag, para editarlo con If-Match
+        return Response.ok().entity(dish).tag(etag(dish.getAtrVersion())).build();
+    }
+    
+    /*
+        Busca varios platos en una sola petición, máximo 100 ids.
+        Su uso desde consola mediante client url:
+        curl -X POST \
+          http://localhost:8084/API-Plato/plato-service/plato/batch 
+          -H 'Content-Type: application/json' \
+          -d '["123", "234", "999"]'
+    */
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response findByIds(List<String> ids) {
+        DishBatch batch = service.findByIds(ids);
+        if (batch == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron consultar los platos", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(batch).build();
+    }
+    
+    /*
+        Sugiere platos cuyo nombre empieza por q, sin importar mayúsculas ni
+        tildes, en orden alfabético. limit es 10 por defecto, máximo 50.
+        Su uso desde consola mediante client url:
+        curl -X GET 'http://localhost:8084/API-Plato/plato-service/plato/autocompletar?q=car&limit=10' 
+
+     */
+    @GET
+    @Path("/autocompletar")
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response autocompletar(@QueryParam("q") String q, @QueryParam("limit") @DefaultValue("10") int limit) {
+        List<Sugerencia> sugerencias = service.autocompletar(q, limit);
+        if (sugerencias == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron sugerir platos", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(sugerencias).build();
+    }
+    
+    /*
+        Número de platos por categoría y por tipo, para los filtros de las
+        pantallas de navegación. Se responde desde contadores en memoria.
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Plato/plato-service/plato/facetas 
+
+     */
+    @GET
+    @Path("/facetas")
+    @Produces({MediaType.APPLICATION_JSON})
+    public DishFacets facetas() {
+        return service.getFacetas();
+    }
+    
+    /*
+        Lista los platos ordenados por precio, opcionalmente en un rango
+        [min, max] y de una categoría. orden es asc (por defecto) o desc y
+        limit el tamaño de la página (50 por defecto, máximo 100). Si hay más
+        platos, la respuesta trae el cursor de la siguiente página en el
+        encabezado X-Next-Cursor y en el Link rel="next".
+        Su uso desde consola mediante client url:
+        curl -i -X GET 'http://localhost:8084/API-Plato/plato-service/plato/precio?min=10000&max=30000&categoria=Platos%20fuertes&orden=asc&limit=20' 
+        curl -i -X GET 'http://localhost:8084/API-Plato/plato-service/plato/precio?min=10000&max=30000&orden=asc&limit=20&cursor=<X-Next-Cursor>' 
+
+     */
+    @GET
+    @Path("/precio")
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response findPorPrecio(@QueryParam("min") String min,
+            @QueryParam("max") String max,
+            @QueryParam("categoria") String categoria,
+            @QueryParam("orden") @DefaultValue("asc") String orden,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("50") int limit,
+            @Context UriInfo uriInfo) {
+        DishPage page = service.findPorPrecio(min, max, categoria, orden, cursor, limit);
+        if (page == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudo listar los platos", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        Response.ResponseBuilder builder = Response.ok().entity(page.getAtrPlatos());
+        if (page.getAtrNextCursor() != null) {
+            builder.header("X-Next-Cursor", page.getAtrNextCursor())
+                    .link(uriInfo.getRequestUriBuilder().replaceQueryParam("cursor", page.getAtrNextCursor()).build(), "next");
+        }
+        return builder.build();
+    }
+    
+    /*
+        Busca platos por nombre, descripción, categoría y tipo, sin importar
+        mayúsculas ni tildes. Deben aparecer todas las palabras; la última
+        puede estar incompleta. Los resultados vienen ordenados por relevancia
+        y paginados con offset y limit (máximo 100).
+        Su uso desde consola mediante client url:
+        curl -X GET 'http://localhost:8084/API-Plato/plato-service/plato/buscar?q=carne%20roj&offset=0&limit=20' 
+
+     */
+    @GET
+    @Path("/buscar")
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response buscar(@QueryParam("q") String q, @QueryParam("offset") @DefaultValue("0") int offset,
+            @QueryParam("limit") @DefaultValue("20") int limit) {
+        DishSearchResult result = service.buscar(q, offset, limit);
+        if (result == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron buscar los platos", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(result).build();
+    }
+    
+    /*
+        Importa un lote de platos (máximo 5000) en una sola transacción. Si
+        algún plato tiene errores no se importa ninguno y la respuesta trae
+        los errores con la posición del plato, por ejemplo [1].Precio.
+        Su uso desde consola mediante client url:
+        curl -X POST \
+          http://localhost:8084/API-Plato/plato-service/plato/bulk 
+          -H 'Content-Type: application/json' \
+          -d '[{"atrIdDish":"234", "atrNameDish":"Carne", "atrPriceDish":"10000",
+                "atrDescriptionDish":"Carne roja", "atrTypeDish":"Especial",
+                "atrCategoriaDish":"Platos fuertes"},
+               {"atrIdDish":"235", "atrNameDish":"Pollo", "atrPriceDish":"9000",
+                "atrDescriptionDish":"Pechuga", "atrTypeDish":"Especial",
+                "atrCategoriaDish":"Platos fuertes"}]'
+    */
+    @POST
+    @Path("/bulk")
+    @Consumes({MediaType.APPLICATION_JSON})
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response importar(List<Dish> dishes) {
+        if (service.importar(dishes)) {
+            JsonResponse resp = new JsonResponse(true, dishes.size() + " platos importados con exito", null);
+            return Response.ok().entity(resp).build();
+        }
+        JsonResponse resp = new JsonResponse(false, "No se importaron los platos", domainErrors.getErrors());
+        return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
     }
     
     /*
@@ -87,7 +290,7 @@ public class PlatoController {
         if (service.create(dish)) {
             resp = new JsonResponse(true, "Plato creado con exito", null);
         } else {
-            resp = new JsonResponse(false, "No se pudo crear el Plato", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo crear el Plato", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     } 
@@ -105,16 +308,23 @@ public class PlatoController {
                "atrCategoriaDish":"Postres"
             
         }'
+        Con If-Match y el ETag de GET /plato/123 solo se edita si nadie lo
+        cambió después; si no, responde 412 y hay que consultarlo de nuevo:
+        curl -X PUT -H 'If-Match: "3"' ... 
     */
     @PUT
     @Path("{Id}")
     @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-    public Response edit(@PathParam("Id") String Id, Dish dish) {
+    public Response edit(@PathParam("Id") String Id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Dish dish) {
         JsonResponse resp;
-        if (service.update(Id, dish)) {
+        Dish editado = service.update(Id, dish, versionIfMatch(ifMatch));
+        if (editado != null) {
             resp = new JsonResponse(true, "Plato modificado con exito", null);
-        } else {
-            resp = new JsonResponse(false, "No se pudo modificar el Plato", DomainErrors.getErrors());
+            return Response.ok().entity(resp).tag(etag(editado.getAtrVersion())).build();
+        }
+        resp = new JsonResponse(false, "No se pudo modificar el Plato", domainErrors.getErrors());
+        if (conflictoVersion(domainErrors.getErrors())) {
+            return Response.status(Response.Status.PRECONDITION_FAILED).entity(resp).build();
         }
         return Response.ok().entity(resp).build();
 
@@ -134,14 +344,43 @@ public class PlatoController {
             resp = new JsonResponse(true, "Plato eliminado con éxito", null);
 
         } else {
-            resp = new JsonResponse(false, "No se pudo eliminar el plato", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo eliminar el plato", domainErrors.getErrors());
         }
         service.delete(Id);
 
         return Response.ok().entity(resp).build();
 
     }
-    
 
-    
+    /**
+     * La etiqueta de un plato es su versión
+     */
+    private static EntityTag etag(long version) {
+        return new EntityTag(String.valueOf(version));
+    }
+
+    /**
+     * Versión que pide el encabezado If-Match
+     *
+     * @param ifMatch valor del encabezado, puede ser null
+     * @return null si no hay encabezado o es *, la versión de la etiqueta, o
+     * -1 si la etiqueta no es una versión, que no coincide con ninguna
+     */
+    private static Long versionIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etiqueta = ifMatch.trim();
+        if (etiqueta.matches("\"[0-9]{1,18}\"")) {
+            return Long.valueOf(etiqueta.substring(1, etiqueta.length() - 1));
+        }
+        return -1L;
+    }
+
+    /**
+     * @return true si la edición falló porque otro cambió el plato antes
+     */
+    private static boolean conflictoVersion(List<Error> errors) {
+        return errors.stream().anyMatch(error -> error.code == ValidationError.VERSION_CONFLICT);
+    }
 }
@@ -0,0 +1,53 @@
+package co.unicauca.plato.presentation.rest;
+
+import co.unicauca.plato.access.ConnectionPool;
+import co.unicauca.plato.access.PoolStats;
+import co.unicauca.plato.domain.service.DishCache;
+import co.unicauca.plato.infra.CacheStats;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Metricas de operacion del servicio, para dimensionar el pool de conexiones
+ * y el cache de platos en produccion.
+ *
+ * @author MANNUEL
+ */
+@Stateless
+@Path("/stats")
+public class StatsController {
+
+    @Inject
+    private ConnectionPool pool;
+
+    @Inject
+    private DishCache cache;
+
+    /*
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Plato/plato-service/stats/pool
+
+     */
+    @GET
+    @Path("/pool")
+    @Produces({MediaType.APPLICATION_JSON})
+    public PoolStats pool() {
+        return pool.getStats();
+    }
+
+    /*
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Plato/plato-service/stats/cache
+
+     */
+    @GET
+    @Path("/cache")
+    @Produces({MediaType.APPLICATION_JSON})
+    public CacheStats cache() {
+        return cache.getStats();
+    }
+}
@@ -0,0 +1,15 @@
+-- Esquema inicial de platoBD. Usa IF NOT EXISTS para adoptar las bases de
+-- datos creadas antes de las migraciones.
+CREATE TABLE IF NOT EXISTS plato (
+    ID varchar(60) PRIMARY KEY,
+    NAME varchar(60) not null,
+    PRECIO varchar(60) not null,
+    CATEGORIA varchar(60) not null,
+    DESCRIPCION varchar(60) not null,
+    TIPOPLATO varchar(60) not null
+);
+
+-- Datos de inicialización
+INSERT INTO plato(ID, NAME, PRECIO, CATEGORIA, DESCRIPCION, TIPOPLATO)
+SELECT '123', 'Pizza', '20000', 'Platos fuertes', 'Tres carnes', 'Especial'
+WHERE NOT EXISTS (SELECT 1 FROM plato WHERE ID = '123');
@@ -0,0 +1,28 @@
+-- El precio pasa de texto a numeric para ordenar y filtrar por rango en la
+-- base de datos. Solo se convierten los precios escritos con dígitos y hasta
+-- dos decimales separados por punto, quitando el signo $ y los espacios. Si
+-- algún precio tiene otro formato (separadores de miles, coma decimal, texto)
+-- la migración falla con la lista de ids, para que se corrijan a mano antes
+-- de volver a desplegar; no se adivina su valor.
+DO $$
+DECLARE
+    invalidos text;
+BEGIN
+    SELECT string_agg(ID || ' (' || PRECIO || ')', ', ' ORDER BY ID)
+    INTO invalidos
+    FROM plato
+    WHERE btrim(PRECIO, ' $') !~ '^[0-9]{1,10}([.][0-9]{1,2})?$';
+    IF invalidos IS NOT NULL THEN
+        RAISE EXCEPTION 'Precios que no son un numero con hasta dos decimales, corrijalos antes de migrar: %', invalidos;
+    END IF;
+END
+$$;
+
+ALTER TABLE plato ALTER COLUMN PRECIO TYPE numeric(12,2) USING btrim(PRECIO, ' $')::numeric;
+
+ALTER TABLE plato ADD CONSTRAINT plato_precio_no_negativo CHECK (PRECIO >= 0);
+
+-- Indices para listar por precio, con o sin categoria; el ID desempata el
+-- orden para paginar por cursor.
+CREATE INDEX IF NOT EXISTS plato_precio_idx ON plato (PRECIO, ID);
+CREATE INDEX IF NOT EXISTS plato_categoria_precio_idx ON plato (CATEGORIA, PRECIO, ID);
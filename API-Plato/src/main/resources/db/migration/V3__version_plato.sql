@@ -0,0 +1,4 @@
+-- Version de cada plato para el control de concurrencia optimista: cada
+-- UPDATE la incrementa y un PUT con If-Match solo aplica si la version no
+-- ha cambiado.
+ALTER TABLE plato ADD COLUMN IF NOT EXISTS VERSION bigint NOT NULL DEFAULT 1;
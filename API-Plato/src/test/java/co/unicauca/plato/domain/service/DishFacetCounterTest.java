@@ -0,0 +1,176 @@
+package co.unicauca.plato.domain.service;
+
+import co.unicauca.plato.access.PlatoRepository;
+import co.unicauca.plato.access.ResultadoCreacion;
+import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.entity.DishFacets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de los contadores de platos cuando las recargas coinciden con
+ * creaciones y eliminaciones
+ *
+ * @author XIMENA
+ */
+public class DishFacetCounterTest
+{
+    private static final int HILOS = 8;
+
+    private static final int OPERACIONES = 200;
+
+    private static final String[] CATEGORIAS = {"CARNE", "POLLO", "PESCADO", "POSTRE"};
+
+    private static final String[] TIPOS = {"PRINCIPIO", "ENTRADA", "ESPECIAL"};
+
+    /**
+     * Tabla plato simulada
+     */
+    private final Map<String, Dish> tabla = new ConcurrentHashMap<>();
+
+    /**
+     * Las recargas corren durante la primera mitad de las escrituras. Un
+     * cambio contado dos veces o perdido por una recarga ya no lo corrige
+     * otra y queda en los contadores finales.
+     */
+    @Test
+    public void recargasConcurrentesNoDescuadranLosContadores() throws Exception
+    {
+        DishFacetCounter facetas = new DishFacetCounter();
+        facetas.setPlatoRepository(new TablaEnMemoria());
+        facetas.recargar();
+        PlatoService service = new PlatoService();
+        service.setPlatoRepository(new TablaEnMemoria());
+        service.setDishCache(new DishCache());
+        service.setDishIndex(new DishIndex());
+        service.setDishFacetCounter(facetas);
+
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS + 1);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger hechas = new AtomicInteger();
+        try {
+            Future<Integer> recargas = pool.submit(() -> {
+                salida.await();
+                int veces = 0;
+                while (hechas.get() < HILOS * OPERACIONES / 2) {
+                    facetas.recargar();
+                    veces++;
+                }
+                return veces;
+            });
+            List<Future<?>> hilos = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                int hilo = h;
+                hilos.add(pool.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < OPERACIONES; i++) {
+                        String id = "h" + hilo + "-" + i;
+                        assertTrue(service.create(plato(id, i)), id);
+                        // Borra uno de cada tres platos que creó
+                        if (i % 3 == 2) {
+                            assertTrue(service.delete("h" + hilo + "-" + (i - 1)));
+                        }
+                        hechas.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> hilo : hilos) {
+                hilo.get();
+            }
+            assertTrue(recargas.get() > 0);
+        } finally {
+            pool.shutdownNow();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        DishFacets esperadas = contar();
+        DishFacets contadas = facetas.getFacetas();
+        assertEquals(esperadas.getAtrTotal(), contadas.getAtrTotal());
+        assertEquals(esperadas.getAtrCategorias(), contadas.getAtrCategorias());
+        assertEquals(esperadas.getAtrTipos(), contadas.getAtrTipos());
+    }
+
+    private static Dish plato(String id, int i)
+    {
+        Dish dish = new Dish();
+        dish.setAtrIdDish(id);
+        dish.setAtrNameDish("Plato " + id);
+        dish.setAtrPriceDish("15000");
+        dish.setAtrDescriptionDish("Del dia");
+        dish.setAtrCategoriaDish(CATEGORIAS[i % CATEGORIAS.length]);
+        dish.setAtrTypeDish(TIPOS[i % TIPOS.length]);
+        return dish;
+    }
+
+    /**
+     * Lo que contaría la consulta agrupada sobre la tabla simulada
+     */
+    private DishFacets contar()
+    {
+        DishFacets facetas = new DishFacets(0, new TreeMap<>(), new TreeMap<>());
+        for (Dish dish : tabla.values()) {
+            facetas.setAtrTotal(facetas.getAtrTotal() + 1);
+            facetas.getAtrCategorias().merge(dish.getAtrCategoriaDish(), 1, Integer::sum);
+            facetas.getAtrTipos().merge(dish.getAtrTypeDish(), 1, Integer::sum);
+        }
+        return facetas;
+    }
+
+    /**
+     * Repositorio sobre la tabla simulada. Las escrituras tardan un poco
+     * después de confirmar y la consulta agrupada tarda un poco, para que las
+     * recargas caigan entre la escritura y el aviso a los contadores.
+     */
+    private class TablaEnMemoria extends PlatoRepository
+    {
+        @Override
+        public ResultadoCreacion create(Dish prmNewDish) {
+            ResultadoCreacion resultado = tabla.putIfAbsent(prmNewDish.getAtrIdDish(), prmNewDish) == null
+                    ? ResultadoCreacion.CREADO : ResultadoCreacion.DUPLICADO;
+            esperar(1);
+            return resultado;
+        }
+
+        @Override
+        public Dish findByIdDish(String prmIdDish) {
+            return tabla.get(prmIdDish);
+        }
+
+        @Override
+        public Dish delete(String prmIdDish) {
+            Dish dish = tabla.remove(prmIdDish);
+            esperar(1);
+            return dish;
+        }
+
+        @Override
+        public DishFacets contarFacetas() {
+            DishFacets facetas = contar();
+            esperar(2);
+            return facetas;
+        }
+    }
+
+    private static void esperar(long ms)
+    {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package co.unicauca.plato.presentation.rest;
+
+import co.unicauca.plato.access.IPlatoRepository;
+import co.unicauca.plato.access.PlatoRepository;
+import co.unicauca.plato.domain.entity.Dish;
+import co.unicauca.plato.domain.service.DishCache;
+import co.unicauca.plato.domain.service.DishFacetCounter;
+import co.unicauca.plato.domain.service.DishIndex;
+import co.unicauca.plato.domain.service.PlatoService;
+import co.unicauca.plato.infra.DomainErrors;
+import co.unicauca.plato.infra.Error;
+import co.unicauca.plato.infra.JsonResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.control.RequestContextController;
+import javax.enterprise.inject.Produces;
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de los errores de validación que devuelve PlatoController, con el
+ * controlador, PlatoService y DomainErrors resueltos por un contenedor CDI
+ *
+ * @author XIMENA
+ */
+public class PlatoControllerTest
+{
+    private static final int HILOS = 16;
+
+    private static final int PETICIONES = 5000;
+
+    /**
+     * Campos obligatorios de un plato, en el orden en que se validan al
+     * crearlo
+     */
+    private static final String[] CAMPOS = {"Name", "Precio", "Categoria", "Descripcion", "TipoPlato", "Id"};
+
+    /**
+     * Muchas peticiones al mismo tiempo sobre un solo controlador, cada una
+     * con su propio contexto de petición. Cada petición deja vacío un
+     * conjunto distinto de campos, así los errores de la respuesta la
+     * identifican.
+     */
+    @Test
+    public void erroresConcurrentesNoSeMezclan() throws Exception
+    {
+        Weld weld = new Weld()
+                .disableDiscovery()
+                .addBeanClasses(PlatoController.class, PlatoService.class, DomainErrors.class,
+                        DishCache.class, Colaboradores.class);
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+        try (WeldContainer container = weld.initialize()) {
+            // Compartido entre peticiones como una instancia del pool de EJB
+            PlatoController controller = container.select(PlatoController.class).get();
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<List<String>>> respuestas = new ArrayList<>();
+            for (int i = 0; i < PETICIONES; i++) {
+                int vacios = vacios(i);
+                respuestas.add(pool.submit(() -> {
+                    salida.await();
+                    RequestContextController peticion = container.select(RequestContextController.class).get();
+                    peticion.activate();
+                    try {
+                        JsonResponse resp = (JsonResponse) controller.create(plato(vacios)).getEntity();
+                        assertFalse(resp.ok);
+                        return campos(resp.errors);
+                    } finally {
+                        peticion.deactivate();
+                    }
+                }));
+            }
+            salida.countDown();
+            for (int i = 0; i < PETICIONES; i++) {
+                assertEquals(esperados(vacios(i)), respuestas.get(i).get(), "peticion " + i);
+            }
+        } finally {
+            pool.shutdownNow();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Dependencias de PlatoService que en Payara cargan la base de datos al
+     * desplegar. Las peticiones que fallan la validación no las usan.
+     */
+    public static class Colaboradores
+    {
+        @Produces
+        IPlatoRepository repository() {
+            return new PlatoRepository();
+        }
+
+        @Produces
+        DishIndex index() {
+            return new DishIndex();
+        }
+
+        @Produces
+        DishFacetCounter facetas() {
+            return new DishFacetCounter();
+        }
+    }
+
+    /**
+     * Máscara de campos vacíos de una petición, nunca 0 para que falle
+     */
+    private static int vacios(int peticion)
+    {
+        return 1 + peticion % ((1 << CAMPOS.length) - 1);
+    }
+
+    /**
+     * Plato con vacíos los campos cuyo bit está en la máscara
+     */
+    private static Dish plato(int vacios)
+    {
+        Dish dish = new Dish();
+        dish.setAtrNameDish(valor(vacios, 0, "Bandeja paisa"));
+        dish.setAtrPriceDish(valor(vacios, 1, "18000"));
+        dish.setAtrCategoriaDish(valor(vacios, 2, "CARNE"));
+        dish.setAtrDescriptionDish(valor(vacios, 3, "Frijoles, arroz y chicharrón"));
+        dish.setAtrTypeDish(valor(vacios, 4, "PRINCIPIO"));
+        dish.setAtrIdDish(valor(vacios, 5, "p" + vacios));
+        return dish;
+    }
+
+    private static String valor(int vacios, int bit, String valor)
+    {
+        return (vacios & (1 << bit)) != 0 ? "" : valor;
+    }
+
+    private static List<String> esperados(int vacios)
+    {
+        List<String> campos = new ArrayList<>();
+        for (int bit = 0; bit < CAMPOS.length; bit++) {
+            if ((vacios & (1 << bit)) != 0) {
+                campos.add("EMPTY_FIELD " + CAMPOS[bit]);
+            }
+        }
+        return campos;
+    }
+
+    private static List<String> campos(List<Error> errors)
+    {
+        List<String> campos = new ArrayList<>();
+        for (Error error : errors) {
+            campos.add(error.code + " " + error.field);
+        }
+        return campos;
+    }
+}
@@ -2,6 +2,7 @@ package co.unicauca.restaurante.access;
 
 import co.unicauca.restaurante.domain.entity.Restaurant;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *
@@ -10,6 +11,10 @@ import java.util.List;
 public interface IRestaurantRepository {
     
     List<Restaurant> findAll();
+    
+    boolean forEach(Consumer<Restaurant> action);
+    
+    List<Restaurant> findPage(String sort, String afterValue, String afterNit, int limit);
 
     List <Restaurant> findByAdmin(String nameAdmin);
     
@@ -17,9 +22,9 @@ public interface IRestaurantRepository {
     
     Restaurant findByNit(String nit);
 
-    boolean create(Restaurant newRestaurant);
+    ResultadoCreacion create(Restaurant newRestaurant);
 
-    boolean update(Restaurant newRestaurant);
+    Restaurant update(Restaurant newRestaurant, Long version);
 
     boolean delete(String nit);
     
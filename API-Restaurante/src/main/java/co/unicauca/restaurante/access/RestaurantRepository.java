@@ -2,56 +2,52 @@ package co.unicauca.restaurante.access;
 
 import co.unicauca.restaurante.domain.entity.Restaurant;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 /**
  * Es una implementación que tiene libertad de hacer una implementación del
  * contrato. Se utiliza postgres, importante: para que funcione la aplicación, 
  * se debe copiar manualmente la librería de maven de netbeans postgresql-42.2.8.jar, 
- * y pegarla en el directorio donde se haya instalado Payara
+ * y pegarla en el directorio donde se haya instalado Payara. Las conexiones se
+ * toman del pool declarado en el web.xml. Es una unica instancia para toda la
+ * aplicacion, el esquema lo crea DatabaseBootstrap al desplegar
  * 
  * @author Nathalia Ruiz 
  */
+@ApplicationScoped
 public class RestaurantRepository implements IRestaurantRepository{
 
-    private Connection conn;
-    
-    public RestaurantRepository (){
-        initDatabase();
-    }
-    
+    /**
+     * Filas que trae cada viaje a la base de datos al recorrer la tabla
+     */
+    private static final int FETCH_SIZE = 200;
+
+    /**
+     * Pool de conexiones a restauranteBD
+     */
+    @Inject
+    private ConnectionPool pool;
     
     @Override
     public List<Restaurant> findAll() {
        List<Restaurant> restaurants = new ArrayList<>();
-           try {
-
-            String sql = "SELECT * FROM restaurante";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+       String sql = "SELECT * FROM restaurante";
+           try (Connection conn = pool.getConnection();
+                   Statement stmt = conn.createStatement();
+                   ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                Restaurant newRestaurant = new Restaurant();
-                newRestaurant.setAtrNitRest(rs.getString("nit"));
-                newRestaurant.setAtrNameRest(rs.getString("name"));
-                newRestaurant.setAtrAddressRest(rs.getString("address"));
-                newRestaurant.setAtrMobileRest(rs.getString("mobile"));
-                newRestaurant.setAtrEmailRest(rs.getString("email"));
-                newRestaurant.setAtrCityRest(rs.getString("city"));
-                newRestaurant.setAtrAdmiRest(rs.getString("userNameAdmin"));
-                
-                restaurants.add(newRestaurant);
+                restaurants.add(toRestaurant(rs));
             }
-            this.disconnect();
 
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, null, ex);
@@ -60,30 +56,110 @@ public class RestaurantRepository implements IRestaurantRepository{
        
     }
 
+    /**
+     * Recorre todos los restaurantes a medida que llegan de la base de datos,
+     * sin cargarlos en memoria. Postgres solo usa un cursor (fetch size)
+     * dentro de una transacción, por eso se apaga el auto-commit mientras
+     * dura el recorrido.
+     *
+     * @param action acción a ejecutar con cada restaurante
+     * @return true si recorrió todos los restaurantes, false si falló la
+     * consulta
+     */
+    @Override
+    public boolean forEach(Consumer<Restaurant> action) {
+        String sql = "SELECT * FROM restaurante ORDER BY NIT";
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        action.accept(toRestaurant(rs));
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, "Error al recorrer los restaurantes", ex);
+        }
+        return false;
+    }
+    
+    /**
+     * Busca una página de restaurantes por cursor (keyset): la consulta
+     * continúa después de la última fila entregada usando el índice del
+     * orden, sin OFFSET.
+     *
+     * @param sort columna de orden: nit, name o city
+     * @param afterValue valor de la columna de orden de la última fila
+     * entregada, o null para la primera página
+     * @param afterNit nit de la última fila entregada, o null para la primera
+     * página
+     * @param limit tamaño de la página
+     * @return restaurantes de la página, o null si falló la consulta
+     */
+    @Override
+    public List<Restaurant> findPage(String sort, String afterValue, String afterNit, int limit) {
+        List<Restaurant> restaurants = new ArrayList<>();
+        String column;
+        switch (sort) {
+            case "name":
+                column = "name";
+                break;
+            case "city":
+                column = "city";
+                break;
+            default:
+                column = null;
+        }
+        String sql;
+        if (column == null) {
+            sql = "SELECT * FROM restaurante "
+                    + (afterNit == null ? "" : "WHERE nit > ? ")
+                    + "ORDER BY nit LIMIT ?";
+        } else {
+            sql = "SELECT * FROM restaurante "
+                    + (afterNit == null ? "" : "WHERE (" + column + ", nit) > (?, ?) ")
+                    + "ORDER BY " + column + ", nit LIMIT ?";
+        }
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (afterNit != null) {
+                if (column != null) {
+                    pstmt.setString(i++, afterValue);
+                }
+                pstmt.setString(i++, afterNit);
+            }
+            pstmt.setInt(i, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    restaurants.add(toRestaurant(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, null, ex);
+            // Una página vacía parecería el final del catálogo
+            return null;
+        }
+        return restaurants;
+    }
     
     @Override
     public Restaurant findByNit(String nit) {
         Restaurant newRestaurant = null;
-        try {
-
-            String sql = "SELECT * FROM restaurante where nit ='"+nit+"';";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-           
-            if (rs.next()) {
-            newRestaurant = new Restaurant();
-            newRestaurant.setAtrNitRest(rs.getString("nit"));
-            newRestaurant.setAtrNameRest(rs.getString("name"));
-            newRestaurant.setAtrAddressRest(rs.getString("address"));
-            newRestaurant.setAtrMobileRest(rs.getString("mobile"));
-            newRestaurant.setAtrEmailRest(rs.getString("email"));
-            newRestaurant.setAtrCityRest(rs.getString("city"));
-            newRestaurant.setAtrAdmiRest(rs.getString("userNameAdmin"));
-            
-            }  
-            this.disconnect();
+        String sql = "SELECT * FROM restaurante where nit = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, nit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    newRestaurant = toRestaurant(rs);
+                }
+            }
 
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, null, ex);
@@ -94,26 +170,15 @@ public class RestaurantRepository implements IRestaurantRepository{
     @Override
     public List<Restaurant> findByAdmin(String nameAdmin) {
         List<Restaurant> restaurants = new ArrayList<>();
-           try {
-
-            String sql = "SELECT * FROM restaurante where userNameAdmin='"+nameAdmin+"'";
-            this.connect();
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                Restaurant newRestaurant = new Restaurant();
-                newRestaurant.setAtrNitRest(rs.getString("nit"));
-                newRestaurant.setAtrNameRest(rs.getString("name"));
-                newRestaurant.setAtrAddressRest(rs.getString("address"));
-                newRestaurant.setAtrMobileRest(rs.getString("mobile"));
-                newRestaurant.setAtrEmailRest(rs.getString("email"));
-                newRestaurant.setAtrCityRest(rs.getString("city"));
-                newRestaurant.setAtrAdmiRest(rs.getString("userNameAdmin"));
-                
-                restaurants.add(newRestaurant);
+        String sql = "SELECT * FROM restaurante where userNameAdmin = ?";
+           try (Connection conn = pool.getConnection();
+                   PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, nameAdmin);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    restaurants.add(toRestaurant(rs));
+                }
             }
-            this.disconnect();
 
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, null, ex);
@@ -125,24 +190,15 @@ public class RestaurantRepository implements IRestaurantRepository{
     @Override
     public Restaurant findByName(String name) {
         Restaurant restaurant = null;
-        try {
-
-            String sql = "SELECT * FROM restaurante Where name='" + name +"'";
-            this.connect();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-
-            if (rs.next()) {
-                restaurant = new Restaurant();
-                restaurant.setAtrNitRest(rs.getString("nit"));
-                restaurant.setAtrNameRest(rs.getString("name"));
-                restaurant.setAtrAddressRest(rs.getString("address"));
-                restaurant.setAtrMobileRest(rs.getString("mobile"));
-                restaurant.setAtrEmailRest(rs.getString("email"));
-                restaurant.setAtrCityRest(rs.getString("city"));
-                restaurant.setAtrAdmiRest(rs.getString("userNameAdmin"));
+        String sql = "SELECT * FROM restaurante Where name = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    restaurant = toRestaurant(rs);
+                }
             }
-            this.disconnect();
 
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, "Error al buscar el producto en la base de datos", ex);
@@ -150,17 +206,22 @@ public class RestaurantRepository implements IRestaurantRepository{
         return restaurant;
     }
 
+    /**
+     * Inserta un restaurante en una sola consulta. Si el nit ya existe no
+     * inserta nada y no devuelve fila, así la verificación de duplicados y el
+     * insert son atómicos.
+     *
+     * @param newRestaurant restaurante a insertar
+     * @return CREADO, DUPLICADO si el nit ya existe, o ERROR si falló la
+     * consulta
+     */
     @Override
-    public boolean create(Restaurant newRestaurant) {
-         String sql="";
-        try {
-            this.connect();
-
-            sql = "INSERT INTO restaurante ( nit, name, address,mobile,email,city,userNameAdmin ) "
-                    + "VALUES ( ?, ?, ?,?, ?, ?, ? )";
-
-            
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+    public ResultadoCreacion create(Restaurant newRestaurant) {
+        String sql = "INSERT INTO restaurante ( nit, name, address,mobile,email,city,userNameAdmin ) "
+                + "VALUES ( ?, ?, ?,?, ?, ?, ? ) "
+                + "ON CONFLICT (nit) DO NOTHING RETURNING version";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, newRestaurant.getAtrNitRest());
             pstmt.setString(2, newRestaurant.getAtrNameRest());
             pstmt.setString(3, newRestaurant.getAtrAddressRest());
@@ -169,31 +230,46 @@ public class RestaurantRepository implements IRestaurantRepository{
             pstmt.setString(6, newRestaurant.getAtrCityRest());
             pstmt.setString(7, newRestaurant.getAtrAdmiRest());
            
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return ResultadoCreacion.DUPLICADO;
+                }
+                newRestaurant.setAtrVersion(rs.getLong("version"));
+                return ResultadoCreacion.CREADO;
+            }
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, "Error en el insert into: " + sql, ex);
         }
-        return false;
+        return ResultadoCreacion.ERROR;
     }
 
+    /**
+     * Edita un restaurante en una sola consulta e incrementa su versión. Si
+     * se da una versión, solo se edita si el restaurante sigue en esa
+     * versión, así dos ediciones concurrentes no se pisan.
+     *
+     * @param newRestaurant restaurante con los datos nuevos
+     * @param version versión que se espera que tenga el restaurante, o null
+     * para editarlo en cualquier versión
+     * @return el restaurante editado, con su versión nueva, o null si no
+     * existe, cambió de versión o falló la consulta
+     */
     @Override
-    public boolean update(Restaurant newRestaurant) {
-        try {
-            this.connect();
-
-            String sql = "UPDATE restaurante "
-                    + "SET "
-                    + "name          = ?,"
-                    + "address       = ?,"
-                    + "mobile        = ?,"
-                    + "email         = ?,"
-                    + "city          = ?,"
-                    + "userNameAdmin = ? "
-                    + "WHERE nit = ?";
-
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+    public Restaurant update(Restaurant newRestaurant, Long version) {
+        String sql = "UPDATE restaurante "
+                + "SET "
+                + "name          = ?,"
+                + "address       = ?,"
+                + "mobile        = ?,"
+                + "email         = ?,"
+                + "city          = ?,"
+                + "userNameAdmin = ?,"
+                + "version       = version + 1 "
+                + "WHERE nit = ?"
+                + (version == null ? "" : " AND version = ?")
+                + " RETURNING *";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, newRestaurant.getAtrNameRest());
             pstmt.setString(2, newRestaurant.getAtrAddressRest());
             pstmt.setString(3, newRestaurant.getAtrMobileRest());
@@ -201,26 +277,26 @@ public class RestaurantRepository implements IRestaurantRepository{
             pstmt.setString(5, newRestaurant.getAtrCityRest());
             pstmt.setString(6, newRestaurant.getAtrAdmiRest());
             pstmt.setString(7, newRestaurant.getAtrNitRest());
-            pstmt.executeUpdate();
-            this.disconnect();
-            return true;
+            if (version != null) {
+                pstmt.setLong(8, version);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? toRestaurant(rs) : null;
+            }
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, "Error al actualizar el producto", ex);
         }
-        return false;
+        return null;
     }
 
     @Override
     public boolean delete(String nit) {
-        try {
-
-            String sql = "DELETE FROM restaurante "
-                    + "WHERE nit ='"+nit+"'";
-
-            this.connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql);
+        String sql = "DELETE FROM restaurante "
+                + "WHERE nit = ?";
+        try (Connection conn = pool.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, nit);
             pstmt.executeUpdate();
-            this.disconnect();
             return true;
         } catch (SQLException ex) {
             Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, "Error al eliminar producto", ex);
@@ -229,67 +305,19 @@ public class RestaurantRepository implements IRestaurantRepository{
     }
 
     /**
-     *  Crea la tabla Restaurant si no existe, se inicializa la tabla con un registro
+     * Construye un restaurante a partir de la fila actual del resultado
      */
-    private void initDatabase() {
-        //SQL statement for creating a new table
-        String sql = "CREATE TABLE IF NOT EXISTS restaurante ("
-                        + "nit varchar(60) PRIMARY KEY," 
-                        + "name        varchar(60) NOT NULL,"
-                        + "address      varchar(60) not null," 
-                        + "mobile  varchar(60) not null," 
-                        + "email  varchar(60) not null," 
-                        + "city     varchar(60) not null," 
-                        + "userNameAdmin   varchar(60) not null" 
-                        + "); ";
-        
-        try {
-            this.connect();
-            Statement stmt = conn.createStatement();
-            stmt.execute(sql);
-            // Datos de inicialización
-            
-            if(this.findByNit("111")==null){
-             stmt.execute("INSERT INTO restaurante(nit, name, address,mobile,email,city,userNameAdmin) "
-                    + "values('111','Cosecha','Norte','8212341','cosecha@hotmail.com','popayan','mfgranoble');");
-                
-            }
-            this.disconnect();
-        } catch (SQLException ex){
-            Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-    
-    /**
-     * Conectar a la bd
-     */
-    public void connect(){
-        try {
-            
-            String url = "jdbc:postgresql://localhost:5432/restauranteBD";
-            String usuario = "postgres";
-            String contrasenia = "system";
-            Class.forName("org.postgresql.Driver");
-            conn = DriverManager.getConnection(url, usuario, contrasenia);
-           
-        } catch (SQLException | ClassNotFoundException ex) {
-            Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-    
-    /**
-     * Desconecta de la base de datos
-     */
-    public void disconnect() {
-        try {
-            if (conn != null) {
-                conn.close();
-            }
-        } catch (SQLException ex) {
-            Logger.getLogger(RestaurantRepository.class.getName()).log(Level.SEVERE, "Error al cerrar conexión de la base de datos", ex);
-        }
-
+    private Restaurant toRestaurant(ResultSet rs) throws SQLException {
+        Restaurant restaurant = new Restaurant();
+        restaurant.setAtrNitRest(rs.getString("nit"));
+        restaurant.setAtrNameRest(rs.getString("name"));
+        restaurant.setAtrAddressRest(rs.getString("address"));
+        restaurant.setAtrMobileRest(rs.getString("mobile"));
+        restaurant.setAtrEmailRest(rs.getString("email"));
+        restaurant.setAtrCityRest(rs.getString("city"));
+        restaurant.setAtrAdmiRest(rs.getString("userNameAdmin"));
+        restaurant.setAtrVersion(rs.getLong("version"));
+        return restaurant;
     }
-
     
 }
@@ -23,6 +23,9 @@ public class Restaurant
     private String atrCityRest;
     
     private String atrAdmiRest;
+    
+    //Version, cambia en cada edicion; se expone como ETag
+    private long atrVersion;
    
     public Restaurant(){
     }
@@ -115,6 +118,16 @@ public class Restaurant
     {
         this.atrEmailRest = atrEmailRest;
     }
+
+    public long getAtrVersion()
+    {
+        return atrVersion;
+    }
+
+    public void setAtrVersion(long atrVersion)
+    {
+        this.atrVersion = atrVersion;
+    }
 /*
     public Admin getAtrAdminRest()
     {
@@ -0,0 +1,29 @@
+package co.unicauca.restaurante.domain.entity;
+
+import java.util.List;
+
+/**
+ * Una página de restaurantes y el cursor para pedir la siguiente
+ *
+ * @author Nathalia Ruiz
+ */
+public class RestaurantPage
+{
+    private final List<Restaurant> restaurants;
+    //null si es la última página
+    private final String nextCursor;
+
+    public RestaurantPage(List<Restaurant> restaurants, String nextCursor)
+    {
+        this.restaurants = restaurants;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Restaurant> getRestaurants() {
+        return restaurants;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
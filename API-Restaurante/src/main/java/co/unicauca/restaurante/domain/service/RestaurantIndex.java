@@ -0,0 +1,135 @@
+package co.unicauca.restaurante.domain.service;
+
+import co.unicauca.restaurante.access.IRestaurantRepository;
+import co.unicauca.restaurante.domain.entity.Restaurant;
+import co.unicauca.restaurante.infra.PrefixIndex;
+import co.unicauca.restaurante.infra.Sugerencia;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+
+/**
+ * Nombres de los restaurantes ordenados en memoria, para autocompletar por
+ * prefijo sin importar mayúsculas ni tildes.
+ *
+ * El indice se arma al desplegar y se recarga cada 10 minutos para recoger
+ * los cambios hechos en otras instancias. RestaurantService lo actualiza en
+ * cada creación, edición o eliminación.
+ *
+ * @author Nathalia Ruiz
+ */
+@Singleton
+@Startup
+@DependsOn("DatabaseBootstrap")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RestaurantIndex {
+
+    @Inject
+    private IRestaurantRepository repository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Indice actual, protegido por lock
+     */
+    private PrefixIndex nombres = new PrefixIndex();
+    /**
+     * Cambios hechos mientras se recarga el indice, para aplicarlos también
+     * al indice nuevo. Es null si no se está recargando.
+     */
+    private List<Consumer<PrefixIndex>> cambiosDuranteRecarga;
+
+    @PostConstruct
+    public void init() {
+        recargar();
+    }
+
+    /**
+     * Arma de nuevo el indice con todos los restaurantes de la base de datos
+     */
+    @Schedule(minute = "*/10", hour = "*", persistent = false)
+    public synchronized void recargar() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            cambiosDuranteRecarga = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        PrefixIndex nuevo = new PrefixIndex();
+        boolean completo = repository.forEach(restaurant -> nuevo.put(restaurant.getAtrNitRest(), restaurant.getAtrNameRest()));
+        lock.writeLock().lock();
+        try {
+            if (completo) {
+                cambiosDuranteRecarga.forEach(cambio -> cambio.accept(nuevo));
+                nombres = nuevo;
+            }
+            cambiosDuranteRecarga = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Logger.getLogger(RestaurantIndex.class.getName()).log(completo ? Level.FINE : Level.WARNING,
+                "Indice de nombres de restaurantes {0} en {1} ms",
+                new Object[]{completo ? "recargado" : "no recargado", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)});
+    }
+
+    /**
+     * Agrega un restaurante al indice o cambia su nombre si ya estaba
+     *
+     * @param restaurant restaurante
+     */
+    public void agregar(Restaurant restaurant) {
+        String nit = restaurant.getAtrNitRest();
+        String nombre = restaurant.getAtrNameRest();
+        aplicar(indice -> indice.put(nit, nombre));
+    }
+
+    /**
+     * Saca un restaurante del indice
+     *
+     * @param nit nit del restaurante
+     */
+    public void eliminar(String nit) {
+        aplicar(indice -> indice.remove(nit));
+    }
+
+    /**
+     * Busca los restaurantes cuyo nombre empieza por un prefijo
+     *
+     * @param prefijo inicio del nombre
+     * @param limite máximo de sugerencias
+     * @return sugerencias en orden alfabético
+     */
+    public List<Sugerencia> autocompletar(String prefijo, int limite) {
+        lock.readLock().lock();
+        try {
+            return nombres.buscar(prefijo, limite);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void aplicar(Consumer<PrefixIndex> cambio) {
+        lock.writeLock().lock();
+        try {
+            cambio.accept(nombres);
+            if (cambiosDuranteRecarga != null) {
+                cambiosDuranteRecarga.add(cambio);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
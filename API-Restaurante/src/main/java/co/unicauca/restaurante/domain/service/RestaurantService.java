@@ -2,11 +2,16 @@ package co.unicauca.restaurante.domain.service;
 
 import co.unicauca.restaurante.access.IRestaurantRepository;
 import co.unicauca.restaurante.domain.entity.Restaurant;
+import co.unicauca.restaurante.domain.entity.RestaurantPage;
 import co.unicauca.restaurante.domain.validators.ValidationError;
 import co.unicauca.restaurante.infra.DomainErrors;
 import co.unicauca.restaurante.infra.Error;
+import co.unicauca.restaurante.infra.Sugerencia;
 import co.unicauca.restaurante.infra.Utilities;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -19,6 +24,21 @@ import javax.inject.Inject;
 @RequestScoped
 public class RestaurantService {
     
+    /**
+     * Tamaño máximo de una página de restaurantes
+     */
+    public static final int MAX_PAGINA = 200;
+    
+    /**
+     * Ordenes permitidos para la paginación
+     */
+    private static final List<String> ORDENES = Arrays.asList("nit", "name", "city");
+    
+    /**
+     * Número máximo de sugerencias del autocompletado
+     */
+    public static final int MAX_SUGERENCIAS = 50;
+    
     /**
      * Dependencia de una abstacción No es algo concreto. No se sabe como será
      * implementado
@@ -26,6 +46,18 @@ public class RestaurantService {
     @Inject
     private IRestaurantRepository repository;
     
+    /**
+     * Errores de validación de la petición actual
+     */
+    @Inject
+    private DomainErrors domainErrors;
+    
+    /**
+     * Nombres de los restaurantes para autocompletar
+     */
+    @Inject
+    private RestaurantIndex index;
+    
      public void setRestaurantRepository(IRestaurantRepository repository){
         this.repository = repository;
     }
@@ -42,6 +74,111 @@ public class RestaurantService {
     }
     
     
+    /**
+     * Busca una página de restaurantes
+     *
+     * @param cursor cursor devuelto por la página anterior, o null para la
+     * primera
+     * @param limit tamaño de la página, entre 1 y MAX_PAGINA
+     * @param sort orden: nit, name o city
+     * @return página de restaurantes, o null si los parámetros no son
+     * válidos o falló la consulta; en ese caso el error tiene el código
+     * UNAVAILABLE
+     */
+    public RestaurantPage findPage(String cursor, int limit, String sort) {
+        List<Error> errors = new ArrayList<>();
+        if (!ORDENES.contains(sort)) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "sort", "El orden debe ser nit, name o city"));
+        }
+        if (limit < 1 || limit > MAX_PAGINA) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "limit", "El tamaño de página debe estar entre 1 y " + MAX_PAGINA));
+        }
+        String[] after = {null, null};
+        if (cursor != null && !cursor.isEmpty()) {
+            after = decodeCursor(cursor, sort);
+            if (after == null) {
+                errors.add(new Error(ValidationError.INVALID_FIELD, "cursor", "El cursor no es válido para este orden"));
+            }
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        // Se pide una fila de más para saber si hay otra página
+        List<Restaurant> restaurants = repository.findPage(sort, after[0], after[1], limit + 1);
+        if (restaurants == null) {
+            errors.add(new Error(ValidationError.UNAVAILABLE, "Restaurantes", "No se pudieron consultar los restaurantes, intente de nuevo"));
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        String nextCursor = null;
+        if (restaurants.size() > limit) {
+            restaurants = restaurants.subList(0, limit);
+            nextCursor = encodeCursor(sort, restaurants.get(limit - 1));
+        }
+        return new RestaurantPage(restaurants, nextCursor);
+    }
+    
+    /**
+     * El cursor es el orden, el valor de la columna de orden y el nit de la
+     * última fila de la página, codificados en base64
+     */
+    private String encodeCursor(String sort, Restaurant last) {
+        String value;
+        switch (sort) {
+            case "name":
+                value = last.getAtrNameRest();
+                break;
+            case "city":
+                value = last.getAtrCityRest();
+                break;
+            default:
+                value = last.getAtrNitRest();
+        }
+        String token = sort + "\n" + value + "\n" + last.getAtrNitRest();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * @return valor de orden y nit del cursor, o null si no es válido o es de
+     * otro orden
+     */
+    private String[] decodeCursor(String cursor, String sort) {
+        try {
+            String[] token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", -1);
+            if (token.length != 3 || !token[0].equals(sort)) {
+                return null;
+            }
+            return new String[]{token[1], token[2]};
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Sugiere restaurantes cuyo nombre empieza por un prefijo, sin importar
+     * mayúsculas ni tildes
+     *
+     * @param prefijo inicio del nombre
+     * @param limite máximo de sugerencias, hasta MAX_SUGERENCIAS
+     * @return sugerencias en orden alfabético, o null si los parámetros no
+     * son válidos
+     */
+    public List<Sugerencia> autocompletar(String prefijo, int limite) {
+        List<Error> errors = new ArrayList<>();
+        if (prefijo == null || prefijo.trim().isEmpty()) {
+            errors.add(new Error(ValidationError.EMPTY_FIELD, "q", "El prefijo es obligatorio"));
+        }
+        if (limite < 1 || limite > MAX_SUGERENCIAS) {
+            errors.add(new Error(ValidationError.INVALID_FIELD, "limit", "El limit debe estar entre 1 y " + MAX_SUGERENCIAS));
+        }
+        if (!errors.isEmpty()) {
+            domainErrors.setErrors(errors);
+            return null;
+        }
+        return index.autocompletar(prefijo, limite);
+    }
+    
     /**
      * Busqueda de restaurantes que son de un Administrador
      *
@@ -82,38 +219,53 @@ public class RestaurantService {
     public boolean create(Restaurant newRestaurant) {
         List<Error> errors = validateCreate(newRestaurant);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
+            domainErrors.setErrors(errors);
             return false;
         }
         
-        //Si pasa las validaciones se graba en la bd
-        return repository.create(newRestaurant);
+        //Si pasa las validaciones se graba en la bd; el insert mismo detecta
+        //si el nit ya existe
+        switch (repository.create(newRestaurant)) {
+            case CREADO:
+                index.agregar(newRestaurant);
+                return true;
+            case DUPLICADO:
+                errors.add(new Error(ValidationError.INVALID_FIELD, "Nit", "El nit del restaurante ya existe"));
+                break;
+            default:
+                errors.add(new Error(ValidationError.INVALID_FIELD, "Nit", "No se pudo guardar el restaurante"));
+        }
+        domainErrors.setErrors(errors);
+        return false;
 
     }
 
         /**
-     * Edita o actualiza un Restaurante
+     * Edita o actualiza un Restaurante con una sola consulta. Si se da la
+     * versión que leyó el cliente, solo se edita si nadie más lo editó
+     * después; si no, el error tiene el código VERSION_CONFLICT.
      *
      * @param nit nit de restaurante 
      * @param newRestaurant restaurante a editar en el sistema
-     * @return true si lo actualiza, false si no
+     * @param version versión esperada del restaurante, o null para editarlo
+     * sin verificarla
+     * @return el restaurante editado con su versión nueva, o null si no lo
+     * actualiza
      */
-    public boolean update(String nit, Restaurant newRestaurant) {
-        List<Error> errors = validateUpdate(nit, newRestaurant);
+    public Restaurant update(String nit, Restaurant newRestaurant, Long version) {
+        List<Error> errors = validarCampos(newRestaurant);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
-            return false;
+            domainErrors.setErrors(errors);
+            return null;
         }
-        Restaurant restauranteAux = this.findByNit(nit);
-        restauranteAux.setAtrNameRest(newRestaurant.getAtrNameRest());
-        restauranteAux.setAtrAddressRest(newRestaurant.getAtrAddressRest());
-        restauranteAux.setAtrMobileRest(newRestaurant.getAtrMobileRest());
-        restauranteAux.setAtrEmailRest(newRestaurant.getAtrEmailRest());   
-        restauranteAux.setAtrCityRest(newRestaurant.getAtrCityRest());  
-        restauranteAux.setAtrAdmiRest(newRestaurant.getAtrAdmiRest());   
-        
-        repository.update(restauranteAux);
-        return true;
+        newRestaurant.setAtrNitRest(nit);
+        Restaurant actualizado = repository.update(newRestaurant, version);
+        if (actualizado == null) {
+            domainErrors.setErrors(validateUpdateFallido(nit, version));
+            return null;
+        }
+        index.agregar(actualizado);
+        return actualizado;
     }
     
    
@@ -127,11 +279,15 @@ public class RestaurantService {
         //Validate usuario
         List<Error> errors = validateDelete(nit);
         if (!errors.isEmpty()) {
-            DomainErrors.setErrors(errors);
+            domainErrors.setErrors(errors);
             return false;
         }
         // Pasada la validación, se puede borrar de la bd
-        return repository.delete(nit);
+        if (!repository.delete(nit)) {
+            return false;
+        }
+        index.eliminar(nit);
+        return true;
     }
     
     
@@ -151,19 +307,7 @@ public class RestaurantService {
             errors.add(error);
         }
      
-        //Validar que no exista el restaurante
-        if(newRestaurant.getAtrNitRest() != null){
-            if (!newRestaurant.getAtrNitRest().isEmpty()) {
-
-                Restaurant restaurantAux = repository.findByNit(newRestaurant.getAtrNitRest());
-
-                if (restaurantAux != null) {
-                    // El restaurante ya existe
-                    Error error = new Error(ValidationError.INVALID_FIELD, "Nit", "El nit del restaurante ya existe");
-                    errors.add(error);
-                }
-            }
-        }
+        //Que no exista el restaurante lo verifica el insert, ver create
         return errors;
     }
 
@@ -217,24 +361,27 @@ public class RestaurantService {
 
     
     /**
-     * Valida que el restaurante esté correcto antes de editarlo en la bd
+     * Averigua por qué no se pudo editar un restaurante. Solo se consulta
+     * cuando falla la edición, así una edición exitosa es una sola consulta.
      * @param nit nit del restaurante
-     * @param newRestaurant restaurante
+     * @param version versión esperada del restaurante, o null
      * @return lista de errores de negocio
      */
-    private List<Error> validateUpdate(String nit, Restaurant newRestaurant) {
-        List<Error> errors = null ;
-        //Validar restaurante
-        errors = validarCampos(newRestaurant);
-        
-         // Validar que exista el restaurante
-         Restaurant restaurantAux = repository.findByNit(nit);
+    private List<Error> validateUpdateFallido(String nit, Long version) {
+        List<Error> errors = new ArrayList<>();
+        Restaurant restaurantAux = repository.findByNit(nit);
         if (restaurantAux == null) {
             // El restaurante no existe
             Error error = new Error(ValidationError.INVALID_FIELD, "nit", "El nit del restaurante no existe");
             errors.add(error);
+        } else if (version != null && restaurantAux.getAtrVersion() != version) {
+            // Otro lo editó después de que el cliente lo leyó
+            Error error = new Error(ValidationError.VERSION_CONFLICT, "version", "El restaurante fue modificado por otro usuario, consúltelo de nuevo");
+            errors.add(error);
+        } else {
+            Error error = new Error(ValidationError.INVALID_FIELD, "nit", "No se pudo modificar el restaurante");
+            errors.add(error);
         }
-
         return errors;
     }
 
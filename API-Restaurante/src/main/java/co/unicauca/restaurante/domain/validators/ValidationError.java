@@ -5,5 +5,5 @@ package co.unicauca.restaurante.domain.validators;
  * @author Libardo, Julio
  */
 public enum ValidationError {
-    INVALID_FIELD, EMPTY_FIELD;
+    INVALID_FIELD, EMPTY_FIELD, VERSION_CONFLICT, UNAVAILABLE;
 }
@@ -0,0 +1,23 @@
+package co.unicauca.restaurante.infra;
+
+/**
+ * Sugerencia del autocompletado: id y nombre tal como está guardado
+ *
+ * @author Nathalia Ruiz
+ */
+public class Sugerencia {
+
+    /**
+     * Identificador del elemento sugerido
+     */
+    public final String id;
+    /**
+     * Nombre del elemento sugerido
+     */
+    public final String nombre;
+
+    public Sugerencia(String id, String nombre) {
+        this.id = id;
+        this.nombre = nombre;
+    }
+}
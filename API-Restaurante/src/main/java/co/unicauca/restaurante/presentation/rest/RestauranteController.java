@@ -1,22 +1,33 @@
 package co.unicauca.restaurante.presentation.rest;
 
 import co.unicauca.restaurante.domain.entity.Restaurant;
+import co.unicauca.restaurante.domain.entity.RestaurantPage;
 import co.unicauca.restaurante.domain.service.RestaurantService;
+import co.unicauca.restaurante.domain.validators.ValidationError;
 import co.unicauca.restaurante.infra.DomainErrors;
+import co.unicauca.restaurante.infra.Error;
 import co.unicauca.restaurante.infra.JsonResponse;
+import co.unicauca.restaurante.infra.Sugerencia;
 import java.util.List;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
 /**
  * API REST de los servicios web. La anotación @Path indica la URL en la 
@@ -37,23 +48,68 @@ public class RestauranteController {
     @Inject
     private RestaurantService service;
     
+    /**
+     * Errores de validación de la petición actual
+     */
+    @Inject
+    private DomainErrors domainErrors;
+    
     public RestauranteController() {
         service = new RestaurantService();
       
     }
     
     /*
+        Lista los restaurantes por páginas. limit es el tamaño de la página
+        (50 por defecto, máximo 200) y sort el orden: nit, name o city. Si hay
+        más restaurantes, la respuesta trae el cursor de la siguiente página
+        en el encabezado X-Next-Cursor y en el Link rel="next". Si falla la
+        base de datos responde 503, no una página vacía.
         Su uso desde consola mediante client url:
-        curl -X GET http://localhost:8084/API-Restaurante/restaurante-service/restaurante/ 
+        curl -i -X GET "http://localhost:8084/API-Restaurante/restaurante-service/restaurante/?limit=20&sort=name" 
+        curl -i -X GET "http://localhost:8084/API-Restaurante/restaurante-service/restaurante/?limit=20&sort=name&cursor=<X-Next-Cursor>" 
 
      */
     @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public List<Restaurant> findAll() {
-        return service.findAll();
+    public Response findAll(@QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("50") int limit,
+            @QueryParam("sort") @DefaultValue("nit") String sort,
+            @Context UriInfo uriInfo) {
+        RestaurantPage page = service.findPage(cursor, limit, sort);
+        if (page == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudo listar los restaurantes", domainErrors.getErrors());
+            Response.Status status = noDisponible(domainErrors.getErrors()) ? Response.Status.SERVICE_UNAVAILABLE : Response.Status.BAD_REQUEST;
+            return Response.status(status).entity(resp).build();
+        }
+        Response.ResponseBuilder builder = Response.ok().entity(page.getRestaurants());
+        if (page.getNextCursor() != null) {
+            builder.header("X-Next-Cursor", page.getNextCursor())
+                    .link(uriInfo.getRequestUriBuilder().replaceQueryParam("cursor", page.getNextCursor()).build(), "next");
+        }
+        return builder.build();
     }
     
     
+    /*
+        Sugiere restaurantes cuyo nombre empieza por q, sin importar mayúsculas
+        ni tildes, en orden alfabético. limit es 10 por defecto, máximo 50.
+        Su uso desde consola mediante client url:
+        curl -X GET 'http://localhost:8084/API-Restaurante/restaurante-service/restaurante/autocompletar?q=la%20esp&limit=10' 
+
+     */
+    @GET
+    @Path("/autocompletar")
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response autocompletar(@QueryParam("q") String q, @QueryParam("limit") @DefaultValue("10") int limit) {
+        List<Sugerencia> sugerencias = service.autocompletar(q, limit);
+        if (sugerencias == null) {
+            JsonResponse resp = new JsonResponse(false, "No se pudieron sugerir restaurantes", domainErrors.getErrors());
+            return Response.status(Response.Status.BAD_REQUEST).entity(resp).build();
+        }
+        return Response.ok().entity(sugerencias).build();
+    }
+    
     /*
         Su uso desde consola mediante client url:
         curl -X GET http://localhost:8084/API-Restaurante/restaurante-service/restaurante/findByName/Maxi Pan 
@@ -76,8 +132,13 @@ public class RestauranteController {
     @GET
     @Path("/findByNit/{nit}")
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    public Restaurant findByNit(@PathParam("nit") String nit) {
-        return service.findByNit(nit);
+    public Response findByNit(@PathParam("nit") String nit) {
+        Restaurant restaurant = service.findByNit(nit);
+        if (restaurant == null) {
+            return Response.noContent().build();
+        }
+        // La versión viaja en el ETag, para editarlo con If-Match
+        return Response.ok().entity(restaurant).tag(etag(restaurant.getAtrVersion())).build();
     }
    
     /*
@@ -116,7 +177,7 @@ public class RestauranteController {
         if (service.create(restaurant)) {
             resp = new JsonResponse(true, "restaurane creado con éxito", null);
         } else {
-            resp = new JsonResponse(false, "No se pudo crear el restaurant", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo crear el restaurant", domainErrors.getErrors());
         }
         return Response.ok().entity(resp).build();
     } 
@@ -135,16 +196,24 @@ public class RestauranteController {
                "city":"popayan",
                "userNameAdmin":"magutierrez"
         }'
+        Con If-Match y el ETag de GET /restaurante/findByNit/222 solo se edita
+        si nadie lo cambió después; si no, responde 412 y hay que consultarlo
+        de nuevo:
+        curl -X PUT -H 'If-Match: "3"' ... 
     */
     @PUT
     @Path("{nit}")
     @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-    public Response edit(@PathParam("nit") String nit, Restaurant restaurant) {
+    public Response edit(@PathParam("nit") String nit, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch, Restaurant restaurant) {
         JsonResponse resp;
-        if (service.update(nit, restaurant)) {
+        Restaurant editado = service.update(nit, restaurant, versionIfMatch(ifMatch));
+        if (editado != null) {
             resp = new JsonResponse(true, "Restaurant modificado con éxito", null);
-        } else {
-            resp = new JsonResponse(false, "No se pudo modificar el Restaurant", DomainErrors.getErrors());
+            return Response.ok().entity(resp).tag(etag(editado.getAtrVersion())).build();
+        }
+        resp = new JsonResponse(false, "No se pudo modificar el Restaurant", domainErrors.getErrors());
+        if (conflictoVersion(domainErrors.getErrors())) {
+            return Response.status(Response.Status.PRECONDITION_FAILED).entity(resp).build();
         }
         return Response.ok().entity(resp).build();
 
@@ -164,12 +233,51 @@ public class RestauranteController {
             resp = new JsonResponse(true, "Restaurante eliminado con éxito", null);
 
         } else {
-            resp = new JsonResponse(false, "No se pudo eliminar el Restaurante", DomainErrors.getErrors());
+            resp = new JsonResponse(false, "No se pudo eliminar el Restaurante", domainErrors.getErrors());
         }
         service.delete(nit);
 
         return Response.ok().entity(resp).build();
 
     }
-    
+
+    /**
+     * La etiqueta de un restaurante es su versión
+     */
+    private static EntityTag etag(long version) {
+        return new EntityTag(String.valueOf(version));
+    }
+
+    /**
+     * Versión que pide el encabezado If-Match
+     *
+     * @param ifMatch valor del encabezado, puede ser null
+     * @return null si no hay encabezado o es *, la versión de la etiqueta, o
+     * -1 si la etiqueta no es una versión, que no coincide con ninguna
+     */
+    private static Long versionIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etiqueta = ifMatch.trim();
+        if (etiqueta.matches("\"[0-9]{1,18}\"")) {
+            return Long.valueOf(etiqueta.substring(1, etiqueta.length() - 1));
+        }
+        return -1L;
+    }
+
+    /**
+     * @return true si la edición falló porque otro cambió el restaurante antes
+     */
+    private static boolean conflictoVersion(List<Error> errors) {
+        return errors.stream().anyMatch(error -> error.code == ValidationError.VERSION_CONFLICT);
+    }
+
+    /**
+     * @return true si la consulta falló en la base de datos y no por la
+     * petición
+     */
+    private static boolean noDisponible(List<Error> errors) {
+        return errors.stream().anyMatch(error -> error.code == ValidationError.UNAVAILABLE);
+    }
 }
@@ -0,0 +1,36 @@
+package co.unicauca.restaurante.presentation.rest;
+
+import co.unicauca.restaurante.access.ConnectionPool;
+import co.unicauca.restaurante.access.PoolStats;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Metricas de operacion del servicio, para dimensionar el pool de conexiones
+ * en produccion.
+ *
+ * @author Nathalia Ruiz
+ */
+@Stateless
+@Path("/stats")
+public class StatsController {
+
+    @Inject
+    private ConnectionPool pool;
+
+    /*
+        Su uso desde consola mediante client url:
+        curl -X GET http://localhost:8084/API-Restaurante/restaurante-service/stats/pool
+
+     */
+    @GET
+    @Path("/pool")
+    @Produces({MediaType.APPLICATION_JSON})
+    public PoolStats pool() {
+        return pool.getStats();
+    }
+}
@@ -0,0 +1,16 @@
+-- Esquema inicial de restauranteBD. Usa IF NOT EXISTS para adoptar las bases
+-- de datos creadas antes de las migraciones.
+CREATE TABLE IF NOT EXISTS restaurante (
+    nit varchar(60) PRIMARY KEY,
+    name varchar(60) NOT NULL,
+    address varchar(60) not null,
+    mobile varchar(60) not null,
+    email varchar(60) not null,
+    city varchar(60) not null,
+    userNameAdmin varchar(60) not null
+);
+
+-- Datos de inicialización
+INSERT INTO restaurante(nit, name, address, mobile, email, city, userNameAdmin)
+SELECT '111', 'Cosecha', 'Norte', '8212341', 'cosecha@hotmail.com', 'popayan', 'mfgranoble'
+WHERE NOT EXISTS (SELECT 1 FROM restaurante WHERE nit = '111');
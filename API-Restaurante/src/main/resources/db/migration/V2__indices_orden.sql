@@ -0,0 +1,4 @@
+-- Indices para la paginacion por cursor de GET /restaurante ordenada por
+-- nombre o ciudad. El nit desempata y hace unico el cursor.
+CREATE INDEX IF NOT EXISTS restaurante_name_nit_idx ON restaurante (name, nit);
+CREATE INDEX IF NOT EXISTS restaurante_city_nit_idx ON restaurante (city, nit);
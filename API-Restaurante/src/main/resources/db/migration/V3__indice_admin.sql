@@ -0,0 +1,2 @@
+-- Indice para buscar los restaurantes de un administrador (findByAdmin)
+CREATE INDEX IF NOT EXISTS restaurante_usernameadmin_idx ON restaurante (userNameAdmin);
@@ -0,0 +1,4 @@
+-- Version de cada restaurante para el control de concurrencia optimista:
+-- cada UPDATE la incrementa y un PUT con If-Match solo aplica si la version
+-- no ha cambiado.
+ALTER TABLE restaurante ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 1;